@@ -4,13 +4,42 @@
 """
 
 import os
+import json
+from datetime import datetime
 from pathlib import Path
+from typing import Optional
 from dotenv import load_dotenv
 
 # Пути
 SCRIPT_DIR = Path(__file__).parent.absolute()
 PROJECT_ROOT = SCRIPT_DIR.parent
 CHROMA_DB_PATH = PROJECT_ROOT / "Task3" / "chroma_db"
+# Манифест с версией индекса; обновляется при каждом изменении коллекции
+INDEX_MANIFEST_PATH = CHROMA_DB_PATH / "index_manifest.json"
+
+
+def write_index_manifest(chunks_count: int, source: str) -> Optional[str]:
+    """
+    Записывает новую версию индекса, чтобы клиенты сбросили закэшированные ответы.
+
+    Возвращает записанную версию или None, если записать манифест не удалось. Коллекция к этому
+    моменту уже изменена, поэтому ошибка не прерывает скрипт: вызывающий сообщает о ней сам.
+    """
+    manifest = {
+        "version": datetime.now().strftime("%Y%m%d%H%M%S%f"),
+        "updated_at": datetime.now().isoformat(),
+        "chunks_count": chunks_count,
+        "source": source
+    }
+    try:
+        tmp_path = INDEX_MANIFEST_PATH.with_suffix(".tmp")
+        with open(tmp_path, "w", encoding="utf-8") as f:
+            json.dump(manifest, f, indent=2, ensure_ascii=False)
+        os.replace(tmp_path, INDEX_MANIFEST_PATH)
+    except OSError as e:
+        print(f"✗ Ошибка при записи манифеста индекса {INDEX_MANIFEST_PATH}: {e}")
+        return None
+    return manifest["version"]
 
 # Загрузка переменных из .env файла
 # Пробуем несколько вариантов путей
@@ -52,6 +81,8 @@ YANDEX_FOLDER_ID = os.getenv("YANDEX_FOLDER_ID")
 YANDEX_MODEL = os.getenv("YANDEX_MODEL", "yandexgpt/latest")
 YANDEX_TEMPERATURE = float(os.getenv("YANDEX_TEMPERATURE", "0.7"))
 YANDEX_MAX_TOKENS = int(os.getenv("YANDEX_MAX_TOKENS", "1000"))
+# Сколько ответов пакета /query_batch генерируется одновременно
+BATCH_LLM_WORKERS = int(os.getenv("BATCH_LLM_WORKERS", "16"))
 
 # Отладочная информация (без вывода самих ключей)
 if YANDEX_API_KEY:
@@ -70,6 +101,10 @@ RELEVANCE_THRESHOLD = float(os.getenv("RELEVANCE_THRESHOLD", "0.8"))  # Коси
 # Параметры API сервера
 API_HOST = os.getenv("API_HOST", "0.0.0.0")
 API_PORT = int(os.getenv("API_PORT", "8000"))
+# Unix domain socket для клиентов на той же машине (дополнительно к TCP), например /tmp/rag-api.sock
+API_UDS = os.getenv("API_UDS")
+# Движок API: secure - SecureRAGEngine, stub - заглушка из Task5/stub_rag_engine.py для тестов
+RAG_ENGINE = os.getenv("RAG_ENGINE", "secure")
 
 
 
@@ -4,19 +4,32 @@ REST API для защищенного RAG-бота на FastAPI.
 """
 
 from contextlib import asynccontextmanager
-from fastapi import FastAPI, HTTPException
+from fastapi import FastAPI, Header, HTTPException, Request, Response
 from fastapi.middleware.cors import CORSMiddleware
+from fastapi.responses import JSONResponse, StreamingResponse
+from fastapi.routing import APIRoute
 from pydantic import BaseModel
-from typing import Optional
+from typing import Callable, Dict, List, Optional
 import uvicorn
+import asyncio
+import os
+import socket
 import sys
+import threading
+import time
+import json
 from pathlib import Path
 
+try:
+    import cbor2
+except ImportError:
+    cbor2 = None
+
 # Добавляем путь к Task4 для импорта config
 sys.path.insert(0, str(Path(__file__).parent.parent / "Task4"))
-from config import API_HOST, API_PORT
+from config import API_HOST, API_PORT, API_UDS, INDEX_MANIFEST_PATH, RAG_ENGINE
 
-from rag_engine_secure import SecureRAGEngine
+from rag_engine_secure import SecureRAGEngine, DeadlineExceeded, QueryCancelled
 
 
 # Модели данных
@@ -24,14 +37,91 @@ class QueryRequest(BaseModel):
     """Модель запроса."""
     query: str
     top_k: Optional[int] = 3
+    # Проекция ответа: клиент может отказаться от рассуждений и текстов чанков
+    include_chunks: bool = True
+    include_reasoning: bool = True
 
 
 class QueryResponse(BaseModel):
-    """Модель ответа."""
+    """Модель ответа. Поля, не запрошенные клиентом, в ответ не попадают."""
     answer: str
-    reasoning: str
+    reasoning: Optional[str] = None
     chunks_count: int
-    chunks: list
+    chunks: Optional[list] = None
+
+
+CBOR_MEDIA_TYPE = "application/cbor"
+# Срок обработки запроса от клиента: миллисекунды Unix-времени
+DEADLINE_HEADER = "X-Request-Deadline"
+# Как часто проверять, не закрыл ли клиент соединение, пока движок обрабатывает запрос
+DISCONNECT_POLL_INTERVAL = 0.2
+# Нестандартный статус (как у nginx): клиент закрыл соединение, не дождавшись ответа
+CLIENT_CLOSED_REQUEST = 499
+
+
+class CBORRoute(APIRoute):
+    """
+    Маршрут с поддержкой CBOR: тело запроса с Content-Type application/cbor
+    преобразуется для FastAPI в JSON, а ответ кодируется в CBOR, если клиент указал
+    application/cbor в Accept. Без пакета cbor2 сервер отвечает 415 на CBOR-запросы
+    и JSON на остальные.
+    """
+
+    def get_route_handler(self) -> Callable:
+        original_handler = super().get_route_handler()
+
+        async def handler(request: Request) -> Response:
+            content_type = request.headers.get("content-type", "")
+            if content_type.startswith(CBOR_MEDIA_TYPE):
+                if cbor2 is None:
+                    return JSONResponse(status_code=415, content={"detail": "CBOR is not supported"})
+                body = json.dumps(cbor2.loads(await request.body())).encode("utf-8")
+                headers = [(k, v) for k, v in request.scope["headers"] if k != b"content-type"]
+                headers.append((b"content-type", b"application/json"))
+
+                original_receive = request.receive
+                body_sent = False
+
+                # Тело отдаётся один раз, дальше - события исходного соединения (в том числе разрыв)
+                async def receive():
+                    nonlocal body_sent
+                    if body_sent:
+                        return await original_receive()
+                    body_sent = True
+                    return {"type": "http.request", "body": body, "more_body": False}
+
+                request = Request({**request.scope, "headers": headers}, receive)
+
+            response = await original_handler(request)
+            accept = request.headers.get("accept", "")
+            if cbor2 is not None and CBOR_MEDIA_TYPE in accept and isinstance(response, JSONResponse):
+                return Response(
+                    content=cbor2.dumps(json.loads(response.body)),
+                    status_code=response.status_code,
+                    media_type=CBOR_MEDIA_TYPE
+                )
+            return response
+
+        return handler
+
+
+class QueryBatchRequest(BaseModel):
+    """Модель пакетного запроса."""
+    queries: List[QueryRequest]
+
+
+class QueryBatchResponse(BaseModel):
+    """Модель пакетного ответа: ответы в порядке запросов."""
+    results: List[QueryResponse]
+
+
+def read_index_version() -> Optional[str]:
+    """Возвращает версию индекса из манифеста или None, если манифест ещё не создан."""
+    try:
+        with open(INDEX_MANIFEST_PATH, "r", encoding="utf-8") as f:
+            return json.load(f).get("version")
+    except (OSError, ValueError):
+        return None
 
 
 # Глобальный экземпляр RAG-движка
@@ -44,8 +134,13 @@ async def lifespan(app: FastAPI):
     # Startup
     global rag_engine
     try:
-        rag_engine = SecureRAGEngine(enable_protection=True)
-        print("Защищенный RAG-движок успешно инициализирован")
+        if RAG_ENGINE == "stub":
+            from stub_rag_engine import StubRAGEngine
+            rag_engine = StubRAGEngine()
+            print("Используется заглушка RAG-движка (RAG_ENGINE=stub)")
+        else:
+            rag_engine = SecureRAGEngine(enable_protection=True)
+            print("Защищенный RAG-движок успешно инициализирован")
     except Exception as e:
         print(f"Ошибка при инициализации RAG-движка: {e}")
         raise
@@ -60,6 +155,7 @@ app = FastAPI(
     version="1.0.0",
     lifespan=lifespan
 )
+app.router.route_class = CBORRoute
 
 # Настройка CORS
 app.add_middleware(
@@ -79,6 +175,8 @@ async def root():
         "version": "1.0.0",
         "endpoints": {
             "query": "/query",
+            "query_batch": "/query_batch",
+            "query_stream": "/query_stream",
             "health": "/health"
         }
     }
@@ -93,17 +191,51 @@ async def health():
     return {
         "status": "healthy",
         "engine_loaded": rag_engine is not None,
-        "protection_enabled": rag_engine.enable_protection if rag_engine else False
+        "protection_enabled": rag_engine.enable_protection if rag_engine else False,
+        "index_version": read_index_version()
     }
 
 
-@app.post("/query", response_model=QueryResponse)
-async def query(request: QueryRequest):
+def parse_deadline(value: Optional[str]) -> Optional[float]:
+    """Переводит заголовок X-Request-Deadline в Unix-время в секундах."""
+    if not value:
+        return None
+    try:
+        return int(value) / 1000.0
+    except ValueError:
+        raise HTTPException(status_code=400, detail=f"Invalid {DEADLINE_HEADER} header")
+
+
+async def run_cancellable(http_request: Request, func: Callable, *args, **kwargs):
+    """
+    Выполняет синхронный вызов движка в пуле потоков, не блокируя цикл событий.
+    Если клиент закрыл соединение (например, бот отменил устаревший вопрос),
+    движок получает признак отмены и прекращает работу.
+    """
+    cancelled = threading.Event()
+    task = asyncio.ensure_future(asyncio.to_thread(func, *args, cancelled=cancelled, **kwargs))
+    try:
+        while True:
+            done, _ = await asyncio.wait({task}, timeout=DISCONNECT_POLL_INTERVAL)
+            if done:
+                return task.result()
+            if await http_request.is_disconnected():
+                cancelled.set()
+    finally:
+        cancelled.set()
+
+
+@app.post("/query", response_model=QueryResponse, response_model_exclude_none=True)
+async def query(request: QueryRequest,
+                http_request: Request,
+                deadline_header: Optional[str] = Header(default=None, alias=DEADLINE_HEADER)):
     """
     Обработка запроса пользователя через защищенный RAG-движок.
     
     Args:
         request: Запрос с текстом вопроса
+        http_request: HTTP-запрос (для отслеживания разрыва соединения)
+        deadline_header: Срок, после которого клиент ответа не ждёт
         
     Returns:
         Ответ с результатом поиска и генерации
@@ -114,35 +246,165 @@ async def query(request: QueryRequest):
     if not request.query or not request.query.strip():
         raise HTTPException(status_code=400, detail="Query cannot be empty")
     
+    deadline = parse_deadline(deadline_header)
+    if deadline is not None and time.time() >= deadline:
+        raise HTTPException(status_code=504, detail="Deadline exceeded")
+
     try:
         # Обрабатываем запрос
-        result = rag_engine.query(request.query, top_k=request.top_k)
+        result = await run_cancellable(http_request, rag_engine.query,
+                                       request.query, top_k=request.top_k, deadline=deadline)
         
         # Формируем ответ
-        response = QueryResponse(
-            answer=result["answer"],
-            reasoning=result["reasoning"],
-            chunks_count=len(result["chunks"]),
-            chunks=[
-                {
-                    "text": chunk["text"][:200] + "..." if len(chunk["text"]) > 200 else chunk["text"],
-                    "source": chunk["metadata"].get("title", "Unknown"),
-                    "distance": chunk.get("distance")
-                }
-                for chunk in result["chunks"]
-            ]
-        )
-        
-        return response
+        return to_response(request, result)
     
+    except DeadlineExceeded:
+        raise HTTPException(status_code=504, detail="Deadline exceeded")
+    except QueryCancelled:
+        raise HTTPException(status_code=CLIENT_CLOSED_REQUEST, detail="Query cancelled")
     except Exception as e:
         raise HTTPException(status_code=500, detail=f"Error processing query: {str(e)}")
 
 
+@app.post("/query_batch", response_model=QueryBatchResponse, response_model_exclude_none=True)
+async def query_batch(request: QueryBatchRequest,
+                      http_request: Request,
+                      deadline_header: Optional[str] = Header(default=None, alias=DEADLINE_HEADER)):
+    """
+    Пакетная обработка запросов: эмбеддинги всех вопросов считаются одним вызовом encode.
+    Для поиска используется наибольший top_k из запросов пакета.
+    
+    Args:
+        request: Пакет запросов
+        http_request: HTTP-запрос (для отслеживания разрыва соединения)
+        deadline_header: Срок, после которого клиент ответа не ждёт
+        
+    Returns:
+        Ответы в порядке запросов
+    """
+    if rag_engine is None:
+        raise HTTPException(status_code=503, detail="RAG engine not initialized")
+    
+    if not request.queries:
+        raise HTTPException(status_code=400, detail="Batch cannot be empty")
+    if any(not item.query or not item.query.strip() for item in request.queries):
+        raise HTTPException(status_code=400, detail="Query cannot be empty")
+    
+    deadline = parse_deadline(deadline_header)
+    if deadline is not None and time.time() >= deadline:
+        raise HTTPException(status_code=504, detail="Deadline exceeded")
+
+    try:
+        top_k = max(item.top_k or 3 for item in request.queries)
+        results = await run_cancellable(http_request, rag_engine.query_batch,
+                                        [item.query for item in request.queries], top_k=top_k, deadline=deadline)
+        return QueryBatchResponse(results=[
+            to_response(item, result) for item, result in zip(request.queries, results)
+        ])
+    
+    except DeadlineExceeded:
+        raise HTTPException(status_code=504, detail="Deadline exceeded")
+    except QueryCancelled:
+        raise HTTPException(status_code=CLIENT_CLOSED_REQUEST, detail="Query cancelled")
+    except Exception as e:
+        raise HTTPException(status_code=500, detail=f"Error processing query batch: {str(e)}")
+
+
+@app.post("/query_stream")
+async def query_stream(request: QueryRequest,
+                       deadline_header: Optional[str] = Header(default=None, alias=DEADLINE_HEADER)):
+    """
+    Потоковая обработка запроса: ответ передаётся как server-sent events по мере генерации.
+    
+    События:
+        data: {"delta": "..."} - очередной фрагмент ответа
+        event: done, data: {"chunks_count": n} - ответ завершён
+        event: error, data: {"detail": "..."} - ошибка во время генерации
+    """
+    if rag_engine is None:
+        raise HTTPException(status_code=503, detail="RAG engine not initialized")
+    
+    if not request.query or not request.query.strip():
+        raise HTTPException(status_code=400, detail="Query cannot be empty")
+    
+    deadline = parse_deadline(deadline_header)
+    if deadline is not None and time.time() >= deadline:
+        raise HTTPException(status_code=504, detail="Deadline exceeded")
+
+    def events():
+        chunks_count = 0
+        try:
+            for event in rag_engine.query_stream(request.query, top_k=request.top_k, deadline=deadline):
+                if "delta" in event:
+                    yield sse_event(None, {"delta": event["delta"]})
+                else:
+                    chunks_count = event["chunks_count"]
+            yield sse_event("done", {"chunks_count": chunks_count})
+        except DeadlineExceeded:
+            yield sse_event("error", {"detail": "Deadline exceeded"})
+        except Exception as e:
+            yield sse_event("error", {"detail": f"Error processing query: {str(e)}"})
+
+    # Синхронный генератор выполняется в пуле потоков и не блокирует цикл событий
+    return StreamingResponse(events(), media_type="text/event-stream",
+                             headers={"Cache-Control": "no-cache", "X-Accel-Buffering": "no"})
+
+
+def sse_event(event: Optional[str], data: Dict) -> str:
+    """Формирует одно событие server-sent events."""
+    prefix = f"event: {event}\n" if event else ""
+    return f"{prefix}data: {json.dumps(data, ensure_ascii=False)}\n\n"
+
+
+def to_response(request: QueryRequest, result: Dict) -> QueryResponse:
+    """Формирует ответ API с учётом проекции, запрошенной клиентом."""
+    return QueryResponse(
+        answer=result["answer"],
+        reasoning=result["reasoning"] if request.include_reasoning else None,
+        chunks_count=len(result["chunks"]),
+        chunks=[
+            {
+                "text": chunk["text"][:200] + "..." if len(chunk["text"]) > 200 else chunk["text"],
+                "source": chunk["metadata"].get("title", "Unknown"),
+                "distance": chunk.get("distance")
+            }
+            for chunk in result["chunks"]
+        ] if request.include_chunks else None
+    )
+
+
+def serve_with_uds():
+    """
+    Запускает сервер одновременно на TCP и на Unix domain socket API_UDS.
+    Один процесс обслуживает оба сокета, поэтому RAG-движок загружается один раз,
+    а клиенты без поддержки сокета продолжают работать по TCP.
+    """
+    tcp_sock = socket.socket(socket.AF_INET6 if ":" in API_HOST else socket.AF_INET)
+    tcp_sock.setsockopt(socket.SOL_SOCKET, socket.SO_REUSEADDR, 1)
+    tcp_sock.bind((API_HOST, API_PORT))
+
+    if os.path.exists(API_UDS):
+        os.remove(API_UDS)
+    uds_sock = socket.socket(socket.AF_UNIX)
+    uds_sock.bind(API_UDS)
+    os.chmod(API_UDS, 0o666)
+
+    server = uvicorn.Server(uvicorn.Config(app))
+    try:
+        asyncio.run(server.serve(sockets=[tcp_sock, uds_sock]))
+    finally:
+        if os.path.exists(API_UDS):
+            os.remove(API_UDS)
+
+
 if __name__ == "__main__":
     print(f"Запуск защищенного API сервера на {API_HOST}:{API_PORT}")
     try:
-        uvicorn.run(app, host=API_HOST, port=API_PORT)
+        if API_UDS:
+            print(f"Дополнительно используется Unix domain socket {API_UDS}")
+            serve_with_uds()
+        else:
+            uvicorn.run(app, host=API_HOST, port=API_PORT)
     except OSError as e:
         if "10048" in str(e) or "address already in use" in str(e).lower():
             print(f"\n✗ Ошибка: Порт {API_PORT} уже занят!")
@@ -4,9 +4,12 @@
 """
 
 import re
-from typing import List, Dict, Optional, Tuple
+import threading
+from concurrent.futures import ThreadPoolExecutor
+from typing import Iterator, List, Dict, Optional, Tuple
 from pathlib import Path
 import json
+import time
 
 import chromadb
 from chromadb.config import Settings
@@ -26,10 +29,34 @@ from config import (
     YANDEX_FOLDER_ID,
     YANDEX_MODEL,
     YANDEX_TEMPERATURE,
-    YANDEX_MAX_TOKENS
+    YANDEX_MAX_TOKENS,
+    BATCH_LLM_WORKERS
 )
 
 
+class DeadlineExceeded(Exception):
+    """Срок обработки запроса истёк: клиент ответа уже не ждёт."""
+
+
+class QueryCancelled(Exception):
+    """Клиент отказался от запроса (например, пользователь задал новый вопрос)."""
+
+
+def _remaining(deadline: Optional[float], cancelled: Optional[threading.Event] = None) -> Optional[float]:
+    """
+    Возвращает остаток времени до срока (Unix-время в секундах) или None, если срока нет.
+    Если срок истёк, выбрасывает DeadlineExceeded, если запрос отменён - QueryCancelled.
+    """
+    if cancelled is not None and cancelled.is_set():
+        raise QueryCancelled("Запрос отменён клиентом")
+    if deadline is None:
+        return None
+    remaining = deadline - time.time()
+    if remaining <= 0:
+        raise DeadlineExceeded("Срок обработки запроса истёк")
+    return remaining
+
+
 class SecureRAGEngine:
     """
     Защищенный RAG-движок с фильтрацией промпт-инъекций.
@@ -255,18 +282,47 @@ class SecureRAGEngine:
             n_results=top_k
         )
         
+        return self._chunks_from_results(results, 0)
+    
+    def search_batch(self, queries: List[str], top_k: int = TOP_K) -> List[List[Dict]]:
+        """
+        Выполняет поиск для нескольких запросов сразу: эмбеддинги всех запросов
+        считаются одним вызовом encode, а поиск в ChromaDB - одним запросом.
+        
+        Args:
+            queries: Текстовые запросы пользователей
+            top_k: Количество результатов на запрос
+            
+        Returns:
+            Списки чанков в порядке запросов
+        """
+        query_embeddings = self.embedding_model.encode(
+            queries, convert_to_numpy=True
+        ).tolist()
+        
+        results = self.collection.query(
+            query_embeddings=query_embeddings,
+            n_results=top_k
+        )
+        
+        return [self._chunks_from_results(results, i) for i in range(len(queries))]
+    
+    def _chunks_from_results(self, results: Dict, index: int) -> List[Dict]:
+        """
+        Отбирает релевантные чанки для запроса с номером index из результата ChromaDB.
+        """
         chunks = []
-        if results["ids"] and len(results["ids"][0]) > 0:
-            for i in range(len(results["ids"][0])):
-                distance = results["distances"][0][i] if "distances" in results else None
+        if results["ids"] and len(results["ids"][index]) > 0:
+            for i in range(len(results["ids"][index])):
+                distance = results["distances"][index][i] if "distances" in results else None
                 
                 if distance is not None and distance > RELEVANCE_THRESHOLD:
                     continue
                 
                 chunk = {
-                    "id": results["ids"][0][i],
-                    "text": results["documents"][0][i],
-                    "metadata": results["metadatas"][0][i],
+                    "id": results["ids"][index][i],
+                    "text": results["documents"][index][i],
+                    "metadata": results["metadatas"][index][i],
                     "distance": distance
                 }
                 chunks.append(chunk)
@@ -347,12 +403,13 @@ A:"""
         
         return prompt
     
-    def _call_llm(self, prompt: str) -> str:
+    def _call_llm(self, prompt: str, timeout: Optional[float] = None) -> str:
         """
         Вызывает YandexGPT для генерации ответа.
         
         Args:
             prompt: Сформированный промпт
+            timeout: Максимальное время ожидания ответа в секундах (None - без ограничения)
             
         Returns:
             Ответ от LLM
@@ -378,7 +435,7 @@ A:"""
             ]
         }
         
-        response = requests.post(url, headers=headers, json=data)
+        response = requests.post(url, headers=headers, json=data, timeout=timeout)
         
         if response.status_code != 200:
             error_detail = ""
@@ -398,20 +455,157 @@ A:"""
         result = response.json()
         return result["result"]["alternatives"][0]["message"]["text"].strip()
     
-    def query(self, user_query: str, top_k: int = TOP_K) -> Dict:
+    def _call_llm_stream(self, prompt: str, timeout: Optional[float] = None,
+                         deadline: Optional[float] = None) -> Iterator[str]:
+        """
+        Вызывает YandexGPT в потоковом режиме.
+        
+        Args:
+            prompt: Сформированный промпт
+            timeout: Максимальное время ожидания данных в секундах (None - без ограничения)
+            deadline: Срок обработки (Unix-время в секундах)
+            
+        Yields:
+            Новые фрагменты текста ответа по мере генерации
+        """
+        url = "https://llm.api.cloud.yandex.net/foundationModels/v1/completion"
+        headers = {
+            "Authorization": f"Api-Key {self.yandex_api_key}",
+            "x-folder-id": self.yandex_folder_id,
+            "Content-Type": "application/json"
+        }
+        data = {
+            "modelUri": f"gpt://{self.yandex_folder_id}/{YANDEX_MODEL}",
+            "completionOptions": {
+                "stream": True,
+                "temperature": YANDEX_TEMPERATURE,
+                "maxTokens": YANDEX_MAX_TOKENS
+            },
+            "messages": [
+                {
+                    "role": "user",
+                    "text": prompt
+                }
+            ]
+        }
+        
+        with requests.post(url, headers=headers, json=data, stream=True, timeout=timeout) as response:
+            if response.status_code != 200:
+                raise requests.exceptions.HTTPError(
+                    f"{response.status_code} {response.reason}: {response.text}\n"
+                    f"URL: {url}\n"
+                    f"Проверьте правильность YANDEX_API_KEY и YANDEX_FOLDER_ID"
+                )
+            
+            # Каждая строка потока содержит весь сгенерированный к этому моменту текст
+            generated = ""
+            for line in response.iter_lines(decode_unicode=True):
+                if not line:
+                    continue
+                _remaining(deadline)
+                text = json.loads(line)["result"]["alternatives"][0]["message"]["text"]
+                if len(text) > len(generated):
+                    yield text[len(generated):]
+                    generated = text
+    
+    def query_stream(self, user_query: str, top_k: int = TOP_K,
+                     deadline: Optional[float] = None) -> Iterator[Dict]:
+        """
+        Потоковая обработка запроса пользователя.
+        
+        Args:
+            user_query: Запрос пользователя
+            top_k: Количество релевантных чанков для поиска
+            deadline: Срок обработки (Unix-время в секундах)
+            
+        Yields:
+            Сначала {"chunks_count": n}, затем {"delta": текст} по мере генерации ответа
+            
+        Raises:
+            DeadlineExceeded: если срок истёк до завершения обработки
+        """
+        _remaining(deadline)
+        chunks = self.search(user_query, top_k=top_k)
+        yield {"chunks_count": len(chunks)}
+        
+        if not chunks:
+            yield {"delta": "Я не знаю. В базе знаний не найдено релевантной информации для ответа на ваш вопрос."}
+            return
+        
+        prompt = self._build_prompt(user_query, chunks)
+        try:
+            for delta in self._call_llm_stream(prompt, timeout=_remaining(deadline), deadline=deadline):
+                yield {"delta": delta}
+        except requests.exceptions.Timeout:
+            if deadline is not None and time.time() >= deadline:
+                raise DeadlineExceeded("Срок обработки запроса истёк во время вызова LLM")
+            raise
+    
+    def query(self, user_query: str, top_k: int = TOP_K, deadline: Optional[float] = None,
+              cancelled: Optional[threading.Event] = None) -> Dict:
         """
         Основной метод для обработки запроса пользователя.
         
         Args:
             user_query: Запрос пользователя
             top_k: Количество релевантных чанков для поиска
+            deadline: Срок обработки (Unix-время в секундах); после него работа прекращается
+            cancelled: Признак отмены запроса клиентом; после него работа прекращается
             
         Returns:
             Словарь с ответом и метаданными
+            
+        Raises:
+            DeadlineExceeded: если срок истёк до завершения обработки
+            QueryCancelled: если запрос отменён до завершения обработки
         """
         # Поиск релевантных чанков
+        _remaining(deadline, cancelled)
         chunks = self.search(user_query, top_k=top_k)
         
+        return self._answer(user_query, chunks, deadline, cancelled)
+    
+    def query_batch(self, user_queries: List[str], top_k: int = TOP_K,
+                    deadline: Optional[float] = None,
+                    cancelled: Optional[threading.Event] = None) -> List[Dict]:
+        """
+        Обрабатывает несколько запросов: поиск выполняется для всех сразу,
+        ответы LLM генерируются параллельно (не больше BATCH_LLM_WORKERS одновременно),
+        поэтому пакет обрабатывается примерно за время самого долгого ответа.
+        
+        Args:
+            user_queries: Запросы пользователей
+            top_k: Количество релевантных чанков для поиска
+            deadline: Срок обработки (Unix-время в секундах)
+            cancelled: Признак отмены пакета клиентом
+            
+        Returns:
+            Словари с ответом и метаданными в порядке запросов
+            
+        Raises:
+            DeadlineExceeded: если срок истёк до завершения обработки
+            QueryCancelled: если пакет отменён до завершения обработки
+        """
+        _remaining(deadline, cancelled)
+        all_chunks = self.search_batch(user_queries, top_k=top_k)
+        
+        pool = ThreadPoolExecutor(max_workers=min(len(user_queries), BATCH_LLM_WORKERS),
+                                  thread_name_prefix="rag-batch")
+        try:
+            futures = [
+                pool.submit(self._answer, user_query, chunks, deadline, cancelled)
+                for user_query, chunks in zip(user_queries, all_chunks)
+            ]
+            return [future.result() for future in futures]
+        finally:
+            # После ошибки ещё не начатые ответы уже не нужны
+            pool.shutdown(wait=False, cancel_futures=True)
+    
+    def _answer(self, user_query: str, chunks: List[Dict], deadline: Optional[float],
+                cancelled: Optional[threading.Event] = None) -> Dict:
+        """
+        Генерирует ответ по найденным чанкам.
+        """
         # Проверяем, есть ли релевантная информация
         if not chunks:
             return {
@@ -423,9 +617,18 @@ A:"""
         # Формируем промпт
         prompt = self._build_prompt(user_query, chunks)
         
-        # Генерируем ответ через LLM
+        # Генерируем ответ через LLM, не дольше остатка срока
+        timeout = _remaining(deadline, cancelled)
         try:
-            answer = self._call_llm(prompt)
+            answer = self._call_llm(prompt, timeout=timeout)
+            # Вызов LLM не прерывается, но ответ, от которого клиент уже отказался, не возвращается
+            _remaining(None, cancelled)
+        except requests.exceptions.Timeout:
+            if deadline is not None and time.time() >= deadline:
+                raise DeadlineExceeded("Срок обработки запроса истёк во время вызова LLM")
+            raise
+        except (DeadlineExceeded, QueryCancelled):
+            raise
         except Exception as e:
             return {
                 "answer": f"Произошла ошибка при генерации ответа: {str(e)}",
@@ -438,4 +641,3 @@ A:"""
             "chunks": chunks,
             "reasoning": f"Найдено {len(chunks)} релевантных фрагментов из базы знаний."
         }
-
@@ -0,0 +1,129 @@
+"""
+Заглушка RAG-движка для тестов API и нагрузочных проверок Telegram-бота.
+Повторяет SecureRAGEngine (пакетный поиск, сроки, отмену, потоковую генерацию),
+но вместо модели эмбеддингов, ChromaDB и YandexGPT использует детерминированные
+заглушки с настраиваемой задержкой LLM. Не требует ключей YandexGPT и индекса Task3.
+
+Запуск API на заглушке:
+    RAG_ENGINE=stub STUB_LLM_DELAY=0.5 python api_secure.py
+"""
+
+import os
+import threading
+import time
+from typing import Iterator, Optional
+
+import requests
+
+from rag_engine_secure import SecureRAGEngine, _remaining
+
+# Время генерации одного ответа LLM в секундах
+STUB_LLM_DELAY = float(os.getenv("STUB_LLM_DELAY", "0.5"))
+# На сколько фрагментов делится ответ в потоковом режиме
+STUB_STREAM_FRAGMENTS = int(os.getenv("STUB_STREAM_FRAGMENTS", "10"))
+
+STUB_DOCUMENTS = [
+    ("Luke Skywalker", "Luke Skywalker is a Jedi Knight and the son of Anakin Skywalker."),
+    ("The Force", "The Force is a mystical energy field that binds the galaxy together."),
+    ("Tatooine", "Tatooine is a desert planet in the Outer Rim orbiting twin suns."),
+]
+
+
+class _Vector(list):
+    """Список с методом tolist(), как у результата SentenceTransformer.encode."""
+
+    def tolist(self):
+        return [item.tolist() if isinstance(item, _Vector) else item for item in self]
+
+
+class StubEmbeddingModel:
+    """Модель эмбеддингов, которая считает вызовы encode."""
+
+    def __init__(self):
+        self.encode_calls = 0
+        self.encoded_texts = 0
+        self._lock = threading.Lock()
+
+    def encode(self, texts, convert_to_numpy: bool = True):
+        batch = isinstance(texts, list)
+        items = texts if batch else [texts]
+        with self._lock:
+            self.encode_calls += 1
+            self.encoded_texts += len(items)
+        vectors = [_Vector([float(len(text) % 7), float(sum(map(ord, text)) % 11)]) for text in items]
+        return _Vector(vectors) if batch else vectors[0]
+
+
+class StubCollection:
+    """Коллекция, которая на любой запрос возвращает одни и те же документы."""
+
+    def query(self, query_embeddings, n_results: int):
+        batch = bool(query_embeddings) and isinstance(query_embeddings[0], list)
+        queries = query_embeddings if batch else [query_embeddings]
+        documents = STUB_DOCUMENTS[:n_results]
+        return {
+            "ids": [[f"doc-{i}" for i in range(len(documents))] for _ in queries],
+            "documents": [[text for _, text in documents] for _ in queries],
+            "metadatas": [[{"title": title} for title, _ in documents] for _ in queries],
+            "distances": [[0.1 * (i + 1) for i in range(len(documents))] for _ in queries],
+        }
+
+
+class StubRAGEngine(SecureRAGEngine):
+    """
+    SecureRAGEngine с заглушками вместо внешних зависимостей.
+    Счётчики llm_started и llm_completed показывают, сколько генераций начато и доведено до конца.
+    """
+
+    def __init__(self, llm_delay: float = STUB_LLM_DELAY, enable_protection: bool = True):
+        self.enable_protection = enable_protection
+        self.embedding_model = StubEmbeddingModel()
+        self.collection = StubCollection()
+        self.few_shot_examples = [
+            ("What is the Force?", "The Force is a mystical energy field that binds the galaxy together."),
+            ("Who is Luke Skywalker?", "Luke Skywalker is a Jedi Knight and the son of Anakin Skywalker."),
+        ]
+        self.llm_delay = llm_delay
+        self.llm_started = 0
+        self.llm_completed = 0
+        self._lock = threading.Lock()
+
+    def _answer_text(self, prompt: str) -> str:
+        return "Stub answer based on " + " ".join(title for title, _ in STUB_DOCUMENTS) + "."
+
+    def _started(self):
+        with self._lock:
+            self.llm_started += 1
+
+    def _completed(self):
+        with self._lock:
+            self.llm_completed += 1
+
+    def _call_llm(self, prompt: str, timeout: Optional[float] = None) -> str:
+        self._started()
+        if timeout is not None and timeout < self.llm_delay:
+            time.sleep(timeout)
+            raise requests.exceptions.Timeout("Stub LLM timeout")
+        time.sleep(self.llm_delay)
+        self._completed()
+        return self._answer_text(prompt)
+
+    def _call_llm_stream(self, prompt: str, timeout: Optional[float] = None,
+                         deadline: Optional[float] = None) -> Iterator[str]:
+        self._started()
+        words = self._answer_text(prompt).split(" ")
+        step = max(1, len(words) // STUB_STREAM_FRAGMENTS)
+        for i in range(0, len(words), step):
+            time.sleep(self.llm_delay / STUB_STREAM_FRAGMENTS)
+            # Как и настоящий поток, прерывается на следующем фрагменте после срока
+            _remaining(deadline)
+            yield ("" if i == 0 else " ") + " ".join(words[i:i + step])
+        self._completed()
+
+    def reset_counters(self):
+        """Сбрасывает счётчики перед очередной проверкой."""
+        with self._lock:
+            self.llm_started = 0
+            self.llm_completed = 0
+        self.embedding_model.encode_calls = 0
+        self.embedding_model.encoded_texts = 0
@@ -0,0 +1,115 @@
+"""
+Тесты API на заглушке RAG-движка (stub_rag_engine.py): не требуют индекса Task3 и ключей YandexGPT.
+
+Запуск:
+    python -m unittest test_stub_api
+"""
+
+import os
+import time
+import unittest
+
+os.environ["RAG_ENGINE"] = "stub"
+
+from fastapi.testclient import TestClient
+
+import api_secure
+
+LLM_DELAY = 0.3
+
+
+class StubApiTest(unittest.TestCase):
+
+    @classmethod
+    def setUpClass(cls):
+        cls.client = TestClient(api_secure.app)
+        cls.client.__enter__()
+        cls.engine = api_secure.rag_engine
+        cls.engine.llm_delay = LLM_DELAY
+
+    @classmethod
+    def tearDownClass(cls):
+        cls.client.__exit__(None, None, None)
+
+    def setUp(self):
+        self.engine.reset_counters()
+
+    def test_query(self):
+        response = self.client.post("/query", json={"query": "Who is Luke Skywalker?"})
+
+        self.assertEqual(response.status_code, 200)
+        self.assertTrue(response.json()["answer"].startswith("Stub answer"))
+        self.assertEqual(response.json()["chunks_count"], 3)
+
+    def test_expired_deadline_is_rejected_before_llm(self):
+        response = self.client.post("/query", json={"query": "Who is Luke Skywalker?"},
+                                    headers={api_secure.DEADLINE_HEADER: deadline_in(-1)})
+
+        self.assertEqual(response.status_code, 504)
+        self.assertEqual(self.engine.llm_started, 0)
+        self.assertEqual(self.engine.embedding_model.encode_calls, 0)
+
+    def test_expired_deadline_is_rejected_before_batch(self):
+        queries = [{"query": f"Question {i}?"} for i in range(4)]
+
+        response = self.client.post("/query_batch", json={"queries": queries},
+                                    headers={api_secure.DEADLINE_HEADER: deadline_in(-1)})
+
+        self.assertEqual(response.status_code, 504)
+        self.assertEqual(self.engine.llm_started, 0)
+        self.assertEqual(self.engine.embedding_model.encode_calls, 0)
+
+    def test_deadline_during_generation_stops_waiting_for_llm(self):
+        started = time.monotonic()
+        response = self.client.post("/query", json={"query": "Who is Luke Skywalker?"},
+                                    headers={api_secure.DEADLINE_HEADER: deadline_in(LLM_DELAY / 3)})
+        elapsed = time.monotonic() - started
+
+        self.assertEqual(response.status_code, 504)
+        self.assertEqual(self.engine.llm_started, 1)
+        self.assertEqual(self.engine.llm_completed, 0)
+        # Ответ не ждёт конца генерации
+        self.assertLess(elapsed, LLM_DELAY)
+
+    def test_deadline_during_stream_stops_generation(self):
+        response = self.client.post("/query_stream", json={"query": "Who is Luke Skywalker?"},
+                                    headers={api_secure.DEADLINE_HEADER: deadline_in(LLM_DELAY / 3)})
+
+        self.assertEqual(response.status_code, 200)
+        deltas = [line for line in response.text.splitlines() if line.startswith('data: {"delta"')]
+        fragments = len(self.engine._answer_text("").split(" "))
+        self.assertLess(len(deltas), fragments)
+        self.assertIn("event: error", response.text)
+        self.assertNotIn("event: done", response.text)
+        self.assertEqual(self.engine.llm_completed, 0)
+
+    def test_batch_is_embedded_with_one_encode_call(self):
+        queries = [{"query": f"Question {i}?"} for i in range(8)]
+
+        response = self.client.post("/query_batch", json={"queries": queries})
+
+        self.assertEqual(response.status_code, 200)
+        self.assertEqual(len(response.json()["results"]), len(queries))
+        self.assertEqual(self.engine.embedding_model.encode_calls, 1)
+        self.assertEqual(self.engine.embedding_model.encoded_texts, len(queries))
+
+    def test_batch_answers_are_generated_concurrently(self):
+        queries = [{"query": f"Question {i}?"} for i in range(8)]
+
+        started = time.monotonic()
+        response = self.client.post("/query_batch", json={"queries": queries})
+        elapsed = time.monotonic() - started
+
+        self.assertEqual(response.status_code, 200)
+        self.assertEqual(self.engine.llm_completed, len(queries))
+        # Последовательная генерация заняла бы len(queries) * LLM_DELAY
+        self.assertLess(elapsed, 3 * LLM_DELAY)
+
+
+def deadline_in(seconds: float) -> str:
+    """Значение заголовка срока: Unix-время в миллисекундах через seconds секунд."""
+    return str(int((time.time() + seconds) * 1000))
+
+
+if __name__ == "__main__":
+    unittest.main()
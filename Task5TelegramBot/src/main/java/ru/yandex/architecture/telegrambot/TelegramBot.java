@@ -1,52 +1,260 @@
 package ru.yandex.architecture.telegrambot;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.ActionType;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendChatAction;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import ru.yandex.architecture.telegrambot.config.BotConfig;
+import ru.yandex.architecture.telegrambot.dto.Deadline;
 import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+import ru.yandex.architecture.telegrambot.service.AdmissionController;
+import ru.yandex.architecture.telegrambot.service.Cancellation;
+import ru.yandex.architecture.telegrambot.service.ChatDebouncer;
+import ru.yandex.architecture.telegrambot.service.ChatQueries;
+import ru.yandex.architecture.telegrambot.service.CircuitBreaker;
+import ru.yandex.architecture.telegrambot.service.EditThrottle;
 import ru.yandex.architecture.telegrambot.service.PythonApiClient;
+import ru.yandex.architecture.telegrambot.service.SendScheduler;
+import ru.yandex.architecture.telegrambot.service.TimerWheel;
+import ru.yandex.architecture.telegrambot.service.TypingIndicator;
+import ru.yandex.architecture.telegrambot.service.UpdateDispatcher;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class TelegramBot extends TelegramLongPollingBot {
 
+    private static final String QUERY_ERROR_TEXT = "❌ Произошла ошибка при обработке вашего запроса. " +
+            "Проверьте, что Python API сервер запущен и доступен.";
+    private static final String BUSY_TEXT = "⏳ Сервис сейчас перегружен. Пожалуйста, повторите запрос чуть позже.";
+    private static final String PLACEHOLDER_TEXT = "⏳ Ищу ответ...";
+    private static final String CANCELLED_TEXT = "🚫 Запрос отменён.";
+    private static final String NOTHING_TO_CANCEL_TEXT = "Нет запроса, который можно отменить.";
+    private static final String CURSOR = " ▌";
+
     private final BotConfig botConfig;
     private final PythonApiClient pythonApiClient;
+    private final UpdateDispatcher updateDispatcher;
+    private final AdmissionController admissionController;
+    private final EditThrottle editThrottle;
+    private final SendScheduler sendScheduler;
+    private final TimerWheel timerWheel;
+    private final TypingIndicator typingIndicator;
+    private final ChatDebouncer chatDebouncer;
+    private final ChatQueries chatQueries;
 
-    @Override
-    public String getBotUsername() {
-        return botConfig.getUsername();
+    public TelegramBot(BotConfig botConfig, PythonApiClient pythonApiClient, UpdateDispatcher updateDispatcher,
+                       AdmissionController admissionController, EditThrottle editThrottle,
+                       SendScheduler sendScheduler, TimerWheel timerWheel, TypingIndicator typingIndicator,
+                       ChatDebouncer chatDebouncer, ChatQueries chatQueries) {
+        super(botOptions(botConfig), botConfig.getToken());
+        this.botConfig = botConfig;
+        this.pythonApiClient = pythonApiClient;
+        this.updateDispatcher = updateDispatcher;
+        this.admissionController = admissionController;
+        this.editThrottle = editThrottle;
+        this.sendScheduler = sendScheduler;
+        this.timerWheel = timerWheel;
+        this.typingIndicator = typingIndicator;
+        this.chatDebouncer = chatDebouncer;
+        this.chatQueries = chatQueries;
+    }
+
+    private static DefaultBotOptions botOptions(BotConfig botConfig) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(botConfig.getApiUrl());
+        options.setMaxThreads(botConfig.getMaxThreads());
+        return options;
     }
 
     @Override
-    public String getBotToken() {
-        return botConfig.getToken();
+    public String getBotUsername() {
+        return botConfig.getUsername();
     }
 
     @Override
     public void onUpdateReceived(Update update) {
+        if (update.hasEditedMessage() && update.getEditedMessage().hasText()) {
+            onMessageEdited(update.getEditedMessage());
+            return;
+        }
         if (update.hasMessage() && update.getMessage().hasText()) {
-            String messageText = update.getMessage().getText();
-            Long chatId = update.getMessage().getChatId();
-            String userName = update.getMessage().getFrom().getUserName();
+            Message message = update.getMessage();
+            Long chatId = message.getChatId();
+            String text = message.getText();
+
+            // /cancel действует сразу, а не после текущего запроса в очереди чата
+            if (text.equals("/cancel")) {
+                cancelQuery(chatId);
+                return;
+            }
 
-            log.info("Получено сообщение от пользователя {} (chatId: {}): {}", userName, chatId, messageText);
+            // Команды дешёвые и не проходят контроль допуска
+            if (text.startsWith("/")) {
+                if (!dispatch(chatId, message, text, null, null, null)) {
+                    log.warn("Очередь обработки переполнена, сообщение чата {} отклонено", chatId);
+                }
+                return;
+            }
 
-            // Обработка команд
-            if (messageText.startsWith("/")) {
-                handleCommand(chatId, messageText);
+            // Вопрос из нескольких сообщений подряд уходит в RAG одним запросом
+            ChatQueries.Fragment fragment = new ChatQueries.Fragment(message.getMessageId(), text);
+            if (chatDebouncer.isEnabled()) {
+                chatDebouncer.offer(chatId, fragment, fragments -> submitQuery(chatId, message, fragments));
                 return;
             }
+            submitQuery(chatId, message, List.of(fragment));
+        }
+    }
+
+    private void onMessageEdited(Message message) {
+        Long chatId = message.getChatId();
+        String text = message.getText();
+        if (text.startsWith("/")) {
+            return;
+        }
+        // Сообщение ещё не отправлено в RAG: исправление войдёт в вопрос
+        if (chatDebouncer.isEnabled() && chatDebouncer.edit(chatId, message.getMessageId(), text)) {
+            return;
+        }
+        // Перезапрашиваем только последний вопрос чата: ответы на старые уже неактуальны.
+        // Исправленное сообщение заменяется в вопросе целиком, даже если тот собран из нескольких
+        List<ChatQueries.Fragment> fragments = chatQueries.edit(chatId, message.getMessageId(), text);
+        if (fragments == null) {
+            return;
+        }
+        log.info("Вопрос чата {} исправлен, запрос выполняется заново", chatId);
+        submitQuery(chatId, message, fragments);
+    }
+
+    private void cancelQuery(Long chatId) {
+        boolean discarded = chatDebouncer.discard(chatId);
+        boolean cancelled = chatQueries.cancel(chatId);
+        if (discarded || cancelled) {
+            log.info("Запрос чата {} отменён пользователем", chatId);
+        }
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(discarded || cancelled ? CANCELLED_TEXT : NOTHING_TO_CANCEL_TEXT);
+        sendMessage(message, SendScheduler.Lane.PRIORITY);
+    }
+
+    private void submitQuery(Long chatId, Message message, List<ChatQueries.Fragment> fragments) {
+        // Срок ответа отсчитывается с момента получения обновления и включает ожидание в очереди
+        Deadline deadline = pythonApiClient.newDeadline();
+        ChatQueries.Query query = chatQueries.newQuery(fragments);
+
+        // При перегрузке сразу отвечаем, не обращаясь к RAG; ответ на предыдущий вопрос не отменяется
+        AdmissionController.Permit permit = admissionController.tryAcquire(chatId);
+        if (permit == null || !dispatch(chatId, message, query.text(), permit, deadline, query)) {
+            if (permit != null) {
+                permit.release();
+            }
+            log.warn("Запрос чата {} отклонён контролем допуска", chatId);
+            sendBusyReply(chatId);
+            return;
+        }
+        // Принятый вопрос отменяет предыдущий, если тот ещё выполняется или ждёт в очереди чата
+        chatQueries.start(chatId, query);
+    }
+
+    private boolean dispatch(Long chatId, Message message, String text, AdmissionController.Permit permit,
+                             Deadline deadline, ChatQueries.Query query) {
+        Cancellation cancellation = query != null ? query.cancellation() : null;
+        // Обработка выполняется вне потока получения обновлений, чтобы медленный запрос
+        // одного чата не задерживал остальные
+        if (updateDispatcher.isReactive()) {
+            return updateDispatcher.dispatchAsync(chatId, () -> Mono.defer(() -> {
+                        if (permit != null) {
+                            permit.start();
+                        }
+                        return processUpdateAsync(message, text, deadline, cancellation);
+                    })
+                    .doFinally(signal -> {
+                        if (permit != null) {
+                            permit.release();
+                        }
+                        if (query != null) {
+                            chatQueries.finished(chatId, query);
+                        }
+                    }));
+        }
+        return updateDispatcher.dispatch(chatId, () -> {
+            if (permit != null) {
+                permit.start();
+            }
+            try {
+                processUpdate(message, text, deadline, cancellation);
+            } finally {
+                if (permit != null) {
+                    permit.release();
+                }
+                if (query != null) {
+                    chatQueries.finished(chatId, query);
+                }
+            }
+        });
+    }
+
+    private void processUpdate(Message message, String messageText, Deadline deadline, Cancellation cancellation) {
+        Long chatId = message.getChatId();
+        String userName = message.getFrom().getUserName();
+
+        log.info("Получено сообщение от пользователя {} (chatId: {}): {}", userName, chatId, messageText);
+
+        // Обработка команд
+        if (messageText.startsWith("/")) {
+            handleCommand(chatId, messageText);
+            return;
+        }
+
+        // Вопрос мог быть заменён новым, пока ждал в очереди чата
+        if (cancellation.isCancelled()) {
+            log.info("Запрос чата {} отменён до начала обработки", chatId);
+            return;
+        }
+
+        // Обработка обычных сообщений
+        handleQuery(chatId, messageText, deadline, cancellation);
+    }
+
+    private Mono<Void> processUpdateAsync(Message message, String messageText, Deadline deadline,
+                                          Cancellation cancellation) {
+        Long chatId = message.getChatId();
+        String userName = message.getFrom().getUserName();
+
+        log.info("Получено сообщение от пользователя {} (chatId: {}): {}", userName, chatId, messageText);
 
-            // Обработка обычных сообщений
-            handleQuery(chatId, messageText);
+        // Команды редки, поэтому выполняются блокирующим кодом вне event-loop
+        if (messageText.startsWith("/")) {
+            return Mono.fromRunnable(() -> handleCommand(chatId, messageText))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then();
         }
+
+        if (cancellation.isCancelled()) {
+            log.info("Запрос чата {} отменён до начала обработки", chatId);
+            return Mono.empty();
+        }
+
+        return handleQueryAsync(chatId, messageText, deadline, cancellation);
     }
 
     private void handleCommand(Long chatId, String command) {
@@ -61,69 +269,249 @@ public class TelegramBot extends TelegramLongPollingBot {
                         "Команды:\n" +
                         "/start - приветствие\n" +
                         "/help - справка\n" +
+                        "/cancel - отменить текущий запрос\n" +
                         "/health - проверка состояния сервиса");
                 break;
             case "/health":
                 boolean isHealthy = pythonApiClient.healthCheck();
-                message.setText(isHealthy 
-                        ? "✅ Сервис работает нормально" 
-                        : "❌ Сервис недоступен. Проверьте, запущен ли Python API сервер.");
+                if (isHealthy) {
+                    message.setText(pythonApiClient.circuitState() == CircuitBreaker.State.HALF_OPEN
+                            ? "⚠️ Сервис восстанавливается после сбоя"
+                            : "✅ Сервис работает нормально");
+                } else if (pythonApiClient.circuitState() == CircuitBreaker.State.OPEN) {
+                    message.setText("❌ Сервис временно недоступен: запросы приостановлены до восстановления Python API.");
+                } else {
+                    message.setText("❌ Сервис недоступен. Проверьте, запущен ли Python API сервер.");
+                }
                 break;
             default:
                 message.setText("Неизвестная команда. Используйте /help для справки.");
         }
 
-        sendMessage(message);
+        sendMessage(message, SendScheduler.Lane.PRIORITY);
     }
 
-    private void handleQuery(Long chatId, String query) {
+    private void handleQuery(Long chatId, String query, Deadline deadline, Cancellation cancellation) {
+        if (editThrottle.isEnabled()) {
+            streamAnswer(chatId, query, deadline, cancellation).block();
+            return;
+        }
+
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
 
+        // Индикатор печати отправляется асинхронно и держится, пока ответ не отправлен
+        TypingIndicator.Handle typing = typingIndicator.start(chatId, () -> sendTypingAction(chatId));
         try {
-            // Отправляем индикатор печати
-            sendTypingAction(chatId);
-
-            // Вызываем Python API
-            QueryResponse response = pythonApiClient.query(query);
-
-            // Формируем ответ
-            StringBuilder responseText = new StringBuilder();
-            responseText.append(response.getAnswer());
-
-            if (response.getChunksCount() != null && response.getChunksCount() > 0) {
-                responseText.append("\n\n📚 Найдено источников: ").append(response.getChunksCount());
+            // Вызываем Python API; отменённый запрос завершается без ответа
+            QueryResponse response = cancellation.bind(pythonApiClient.queryAsync(query, deadline)).block();
+            if (response == null && cancellation.isCancelled()) {
+                log.info("Запрос чата {} отменён: {}", chatId, query);
+                typing.stop();
+                return;
             }
 
-            message.setText(responseText.toString());
+            message.setText(formatAnswer(response));
 
         } catch (Exception e) {
             log.error("Ошибка при обработке запроса", e);
-            message.setText("❌ Произошла ошибка при обработке вашего запроса. " +
-                    "Проверьте, что Python API сервер запущен и доступен.");
+            message.setText(QUERY_ERROR_TEXT);
         }
 
-        sendMessage(message);
+        sendMessage(message, SendScheduler.Lane.NORMAL).whenComplete((result, e) -> typing.stop());
     }
 
-    private void sendMessage(SendMessage message) {
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при отправке сообщения в Telegram", e);
+    private Mono<Void> handleQueryAsync(Long chatId, String query, Deadline deadline, Cancellation cancellation) {
+        if (editThrottle.isEnabled()) {
+            return streamAnswer(chatId, query, deadline, cancellation);
+        }
+        return Mono.usingWhen(
+                Mono.fromSupplier(() -> typingIndicator.start(chatId, () -> sendTypingAction(chatId))),
+                // Отменённый запрос завершается без ответа
+                typing -> cancellation.bind(pythonApiClient.queryAsync(query, deadline)
+                                .map(this::formatAnswer)
+                                .onErrorResume(e -> {
+                                    log.error("Ошибка при обработке запроса", e);
+                                    return Mono.just(QUERY_ERROR_TEXT);
+                                })
+                                .defaultIfEmpty(QUERY_ERROR_TEXT))
+                        .flatMap(text -> {
+                            SendMessage message = new SendMessage();
+                            message.setChatId(chatId.toString());
+                            message.setText(text);
+                            return sendMessageAsync(message);
+                        }),
+                typing -> Mono.fromRunnable(typing::stop));
+    }
+
+    /**
+     * Отправляет сообщение-заглушку и правит его по мере генерации ответа.
+     * Промежуточные правки прореживаются {@link EditThrottle}: при частых правках Bot API
+     * отвечает 429, поэтому между правками остаётся только последний полученный текст.
+     */
+    private Mono<Void> streamAnswer(Long chatId, String query, Deadline deadline, Cancellation cancellation) {
+        SendMessage placeholder = new SendMessage();
+        placeholder.setChatId(chatId.toString());
+        placeholder.setText(PLACEHOLDER_TEXT);
+
+        return sendScheduled(placeholder, SendScheduler.Lane.NORMAL)
+                .flatMap(message -> {
+                    Integer messageId = message.getMessageId();
+                    AtomicReference<QueryResponse> last = new AtomicReference<>();
+                    AtomicReference<String> shown = new AtomicReference<>(PLACEHOLDER_TEXT);
+                    editThrottle.streamStarted();
+                    return cancellation.bind(pythonApiClient.queryStream(query, deadline)
+                                    // Если поток не дал ни одного фрагмента, ответ запрашивается обычным вызовом
+                                    .onErrorResume(e -> {
+                                        if (last.get() != null) {
+                                            return Flux.error(e);
+                                        }
+                                        log.warn("Потоковый ответ недоступен, используется обычный запрос: {}",
+                                                e.getMessage());
+                                        return pythonApiClient.queryAsync(query, deadline).flux();
+                                    }))
+                            .doOnNext(last::set)
+                            .sample(Flux.defer(() -> Mono.delay(editThrottle.nextInterval(), timerWheel.scheduler()))
+                                    .repeat())
+                            .onBackpressureLatest()
+                            .concatMap(partial -> editMessage(chatId, messageId,
+                                    partial.getAnswer() + CURSOR, shown, false), 1)
+                            .then(Mono.defer(() -> cancellation.isCancelled()
+                                    ? deleteMessage(chatId, messageId)
+                                    : editMessage(chatId, messageId,
+                                    last.get() != null ? formatAnswer(last.get()) : QUERY_ERROR_TEXT, shown, true)))
+                            .onErrorResume(e -> {
+                                log.error("Ошибка при обработке запроса", e);
+                                return editMessage(chatId, messageId, QUERY_ERROR_TEXT, shown, true);
+                            })
+                            .doFinally(signal -> editThrottle.streamFinished());
+                })
+                .onErrorResume(e -> {
+                    log.error("Ошибка при отправке сообщения в Telegram", e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Удаляет сообщение-заглушку отменённого запроса: ответ придёт в новом сообщении.
+     */
+    private Mono<Void> deleteMessage(Long chatId, Integer messageId) {
+        DeleteMessage delete = new DeleteMessage(chatId.toString(), messageId);
+        return sendScheduled(chatId.toString(), SendScheduler.Lane.NORMAL, delete)
+                .onErrorResume(e -> {
+                    log.warn("Не удалось удалить сообщение в Telegram: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Правит сообщение, если текст изменился. Промежуточная правка при 429 пропускается,
+     * итоговую (mustDeliver) повторяет планировщик отправки, а если Bot API так и не принял её,
+     * ответ отправляется новым сообщением.
+     */
+    private Mono<Void> editMessage(Long chatId, Integer messageId, String text,
+                                   AtomicReference<String> shown, boolean mustDeliver) {
+        if (text == null || text.isBlank() || text.equals(shown.get())) {
+            return Mono.empty();
         }
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId.toString());
+        edit.setMessageId(messageId);
+        edit.setText(text);
+        // Промежуточную правку можно потерять: следующая всё равно покажет более полный текст
+        SendScheduler.Lane lane = mustDeliver ? SendScheduler.Lane.NORMAL : SendScheduler.Lane.DROPPABLE;
+        return sendScheduled(chatId.toString(), lane, edit)
+                .doOnNext(result -> {
+                    shown.set(text);
+                    editThrottle.onEditSucceeded();
+                })
+                .then()
+                .onErrorResume(e -> {
+                    Duration retryAfter = SendScheduler.retryAfter(e);
+                    if (retryAfter == null) {
+                        log.warn("Не удалось обновить сообщение в Telegram: {}", e.getMessage());
+                        return Mono.empty();
+                    }
+                    editThrottle.onRateLimited(retryAfter);
+                    if (!mustDeliver) {
+                        return Mono.empty();
+                    }
+                    log.warn("Не удалось обновить сообщение в чате {} после повторов, ответ отправлен заново",
+                            chatId);
+                    SendMessage message = new SendMessage();
+                    message.setChatId(chatId.toString());
+                    message.setText(text);
+                    return sendMessageAsync(message);
+                });
     }
 
-    private void sendTypingAction(Long chatId) {
+    private String formatAnswer(QueryResponse response) {
+        StringBuilder responseText = new StringBuilder();
+        responseText.append(response.getAnswer());
+
+        if (response.getChunksCount() != null && response.getChunksCount() > 0) {
+            responseText.append("\n\n📚 Найдено источников: ").append(response.getChunksCount());
+        }
+
+        return responseText.toString();
+    }
+
+    private CompletableFuture<Message> sendMessage(SendMessage message, SendScheduler.Lane lane) {
+        // Рабочий поток не ждёт своей очереди на отправку: порядок сообщений чата сохраняет планировщик
+        return sendScheduler.submit(message.getChatId(), lane, () -> executeFuture(message))
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        log.error("Ошибка при отправке сообщения в Telegram", e);
+                    }
+                });
+    }
+
+    private void sendBusyReply(Long chatId) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(BUSY_TEXT);
+        sendMessageAsync(message).subscribe();
+    }
+
+    private Mono<Void> sendMessageAsync(SendMessage message) {
+        return sendScheduled(message, SendScheduler.Lane.NORMAL)
+                .onErrorResume(e -> {
+                    log.error("Ошибка при отправке сообщения в Telegram", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Message> sendScheduled(SendMessage message, SendScheduler.Lane lane) {
+        return sendScheduled(message.getChatId(), lane, message);
+    }
+
+    /**
+     * Вызов Bot API через планировщик отправки: он учитывает общий лимит и лимит чата.
+     */
+    private <T extends Serializable, M extends BotApiMethod<T>> Mono<T> sendScheduled(String chatId,
+                                                                                   SendScheduler.Lane lane,
+                                                                                   M method) {
+        return Mono.defer(() -> Mono.fromFuture(sendScheduler.submit(chatId, lane, () -> executeFuture(method))));
+    }
+
+    private CompletableFuture<Boolean> sendTypingAction(Long chatId) {
+        return sendScheduler.submitAction(chatId.toString(), () -> executeFuture(typingAction(chatId)));
+    }
+
+    private <T extends Serializable, M extends BotApiMethod<T>> CompletableFuture<T> executeFuture(M method) {
         try {
-            org.telegram.telegrambots.meta.api.methods.send.SendChatAction action = 
-                    new org.telegram.telegrambots.meta.api.methods.send.SendChatAction();
-            action.setChatId(chatId.toString());
-            action.setAction(org.telegram.telegrambots.meta.api.methods.ActionType.TYPING);
-            execute(action);
+            return executeAsync(method);
         } catch (TelegramApiException e) {
-            log.warn("Не удалось отправить индикатор печати", e);
+            return CompletableFuture.failedFuture(e);
         }
     }
-}
 
+    private SendChatAction typingAction(Long chatId) {
+        SendChatAction action = new SendChatAction();
+        action.setChatId(chatId.toString());
+        action.setAction(ActionType.TYPING);
+        return action;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "telegram.admission")
+public class AdmissionConfig {
+    // Максимальное число принятых запросов (в очереди и в обработке) на весь бот
+    private int maxPending = 500;
+    // Максимальное число одновременно принятых запросов одного чата
+    private int maxInFlightPerChat = 3;
+}
@@ -0,0 +1,26 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "python.api.cache")
+public class AnswerCacheConfig {
+    private boolean enabled = true;
+    // Максимальное число ответов в памяти; вытеснение по частоте обращений (W-TinyLFU)
+    private long maxEntries = 10_000;
+    private Duration ttl = Duration.ofHours(1);
+    private Disk disk = new Disk();
+
+    @Data
+    public static class Disk {
+        private boolean enabled = true;
+        // Файл, отображаемый в память; сохраняет ответы между перезапусками
+        private String path = "cache/answers.bin";
+        private int sizeBytes = 64 * 1024 * 1024;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "python.api.batching")
+public class BatchingConfig {
+    private boolean enabled = false;
+    // Сколько ждать попутных запросов и максимальный размер пакета
+    private Duration window = Duration.ofMillis(5);
+    private int maxBatchSize = 16;
+    // При меньшем числе одновременных запросов пакеты не собираются
+    private int minInFlight = 8;
+}
@@ -10,5 +10,20 @@ import org.springframework.context.annotation.Configuration;
 public class BotConfig {
     private String token;
     private String username;
-}
+    // Базовый адрес Bot API; можно направить на локальный тестовый сервер
+    private String apiUrl = "https://api.telegram.org/bot";
+    // Размер пула потоков библиотеки Telegram для executeAsync
+    private int maxThreads = 8;
+    private Webhook webhook = new Webhook();
 
+    @Data
+    public static class Webhook {
+        // true - получать обновления через webhook, false - через long polling
+        private boolean enabled = false;
+        // Публичный адрес приложения, на который Telegram будет отправлять обновления
+        private String url;
+        private String path = "/telegram/webhook";
+        // Значение заголовка X-Telegram-Bot-Api-Secret-Token, которым Telegram подписывает запросы
+        private String secretToken;
+    }
+}
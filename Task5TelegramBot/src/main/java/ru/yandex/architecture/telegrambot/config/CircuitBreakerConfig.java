@@ -0,0 +1,25 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "python.api.circuit-breaker")
+public class CircuitBreakerConfig {
+    private boolean enabled = true;
+    // Размер скользящего окна (в вызовах) и минимум вызовов для принятия решения
+    private int windowSize = 50;
+    private int minimumCalls = 20;
+    // Пороги доли ошибок и медленных вызовов, в процентах
+    private double failureRateThreshold = 50;
+    private double slowCallRateThreshold = 80;
+    private Duration slowCallDuration = Duration.ofSeconds(15);
+    // Сколько вызовы не пропускаются после размыкания
+    private Duration waitInOpenState = Duration.ofSeconds(30);
+    // Число пробных вызовов в полуоткрытом состоянии
+    private int halfOpenCalls = 3;
+}
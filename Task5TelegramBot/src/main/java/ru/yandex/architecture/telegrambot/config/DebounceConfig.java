@@ -0,0 +1,21 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "telegram.debounce")
+public class DebounceConfig {
+    private boolean enabled = false;
+    // Пауза после последнего сообщения, после которой вопрос считается законченным
+    private Duration quietWindow = Duration.ofMillis(1500);
+    // Предел ожидания с первого сообщения, даже если пользователь продолжает писать
+    private Duration maxWait = Duration.ofSeconds(5);
+    private int maxFragments = 10;
+    // Запрос, начатый не раньше этого срока, отменяется и объединяется с новым сообщением
+    private Duration mergeInFlightWithin = Duration.ofSeconds(5);
+}
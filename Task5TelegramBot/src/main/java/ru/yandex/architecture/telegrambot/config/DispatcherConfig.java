@@ -0,0 +1,29 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "telegram.dispatcher")
+public class DispatcherConfig {
+    private Mode mode = Mode.PLATFORM;
+    // Количество последовательных очередей (и рабочих потоков); чат всегда попадает в одну и ту же.
+    // В режиме VIRTUAL не используется
+    private int workers = Runtime.getRuntime().availableProcessors() * 2;
+    // Максимальная глубина очереди одного рабочего потока (в режиме VIRTUAL - одного чата,
+    // в режиме REACTIVE - одной группы чатов)
+    private int queueCapacity = 100;
+    // Максимальное число одновременно обрабатываемых обновлений в режиме REACTIVE
+    private int reactiveConcurrency = 256;
+
+    public enum Mode {
+        // Фиксированный пул платформенных потоков
+        PLATFORM,
+        // Отдельный виртуальный поток на каждое обновление
+        VIRTUAL,
+        // Неблокирующая цепочка Reactor от обновления до ответа
+        REACTIVE
+    }
+}
@@ -0,0 +1,20 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "python.api.hedging")
+public class HedgingConfig {
+    private boolean enabled = false;
+    // Повторный запрос отправляется, если ответ не пришёл за это время (перцентиль задержки)
+    private double percentile = 0.95;
+    // Задержка до накопления статистики и её нижняя граница
+    private Duration minDelay = Duration.ofSeconds(2);
+    // Максимальная доля дополнительных запросов, в процентах
+    private double budgetPercent = 5;
+}
@@ -0,0 +1,25 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "python.api.limiter")
+public class LimiterConfig {
+    private boolean enabled = true;
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 200;
+    // Сколько запросов может ждать освобождения лимита; остальные сразу отклоняются
+    private int maxQueue = 100;
+    // Допустимый рост задержки относительно долгосрочной перед снижением лимита
+    private double rttTolerance = 1.5;
+    // Доля нового значения при сглаживании лимита
+    private double smoothing = 0.2;
+    // Размер окна (в запросах) для долгосрочной средней задержки
+    private int longWindow = 600;
+    // Множитель лимита при таймауте или ошибке Python API
+    private double backoffRatio = 0.9;
+}
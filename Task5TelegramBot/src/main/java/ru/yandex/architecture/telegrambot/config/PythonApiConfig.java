@@ -4,11 +4,79 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "python.api")
 public class PythonApiConfig {
     private String url = "http://localhost:8000";
+    // Адреса нескольких реплик Python API; если не заданы, используется url
+    private List<String> urls = new ArrayList<>();
     private int timeout = 30000;
-}
+    private Duration healthCheckInterval = Duration.ofSeconds(10);
+    private Duration healthCheckTimeout = Duration.ofSeconds(5);
+    // Путь к манифесту индекса (Task3/chroma_db/index_manifest.json), если Python-сервис на той же машине
+    private String indexManifest;
+    private Pool pool = new Pool();
+    private Projection projection = new Projection();
+    // Формат обмена с репликами; для отдельных реплик его можно переопределить:
+    // python.api.wire-formats[http://localhost:8001]=CBOR
+    private WireFormat wireFormat = WireFormat.JSON;
+    private Map<String, WireFormat> wireFormats = new HashMap<>();
+    // Unix domain socket реплики url, если Python API работает на той же машине;
+    // для остальных реплик: python.api.unix-sockets[http://localhost:8001]=/run/rag/api-8001.sock
+    private String unixSocket;
+    private Map<String, String> unixSockets = new HashMap<>();
+
+    /**
+     * Адреса реплик: urls, а если они не заданы - url.
+     */
+    public List<String> backendUrls() {
+        List<String> backendUrls = urls.stream().filter(u -> !u.isBlank()).toList();
+        return backendUrls.isEmpty() ? List.of(url) : backendUrls;
+    }
+
+    public WireFormat wireFormatFor(String backendUrl) {
+        return wireFormats.getOrDefault(backendUrl, wireFormat);
+    }
 
+    public String unixSocketFor(String backendUrl) {
+        return unixSockets.getOrDefault(backendUrl, backendUrl.equals(url) ? unixSocket : null);
+    }
+
+    public enum WireFormat {
+        JSON, CBOR
+    }
+
+    @Data
+    public static class Pool {
+        private int maxConnections = 100;
+        // Сколько запросов может ждать свободного соединения и как долго
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+        // Простаивающие соединения закрываются, чтобы не упираться в keep-alive таймаут uvicorn (5 с)
+        private Duration maxIdleTime = Duration.ofSeconds(4);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictionInterval = Duration.ofSeconds(10);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        // Максимальная пауза между данными при чтении ответа; генерация LLM может идти долго
+        private Duration readTimeout = Duration.ofSeconds(30);
+        private Duration writeTimeout = Duration.ofSeconds(10);
+        private boolean keepAlive = true;
+    }
+
+    /**
+     * Какие необязательные поля ответа запрашивать у Python API. Бот показывает только
+     * ответ и число источников, поэтому по умолчанию рассуждения и чанки не передаются.
+     */
+    @Data
+    public static class Projection {
+        private boolean includeChunks = false;
+        private boolean includeReasoning = false;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "telegram.send-scheduler")
+public class SendSchedulerConfig {
+    private boolean enabled = true;
+    // Общий лимит Bot API и допустимый всплеск сверх него
+    private int globalMessagesPerSecond = 30;
+    private int globalBurst = 5;
+    // Лимит одного чата
+    private Duration chatInterval = Duration.ofSeconds(1);
+    private int chatBurst = 1;
+    // Повторы после ответа 429 и предел сообщений, ожидающих отправки
+    private int maxRetries = 5;
+    private int maxQueued = 10000;
+}
@@ -0,0 +1,20 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "telegram.streaming")
+public class StreamingConfig {
+    // true - ответ показывается по мере генерации через правку сообщения-заглушки
+    private boolean enabled = false;
+    // Границы интервала между правками одного сообщения
+    private Duration minEditInterval = Duration.ofSeconds(1);
+    private Duration maxEditInterval = Duration.ofSeconds(10);
+    // Доля общего лимита Bot API (около 30 сообщений в секунду), отданная под правки
+    private int globalEditsPerSecond = 20;
+}
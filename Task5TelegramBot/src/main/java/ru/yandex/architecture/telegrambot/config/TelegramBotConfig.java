@@ -1,10 +1,9 @@
 package ru.yandex.architecture.telegrambot.config;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Lazy;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 import ru.yandex.architecture.telegrambot.TelegramBot;
@@ -16,10 +15,15 @@ import jakarta.annotation.PostConstruct;
 public class TelegramBotConfig {
 
     private final TelegramBot telegramBot;
+    private final BotConfig botConfig;
 
     @PostConstruct
     public void registerBot() {
         try {
+            if (botConfig.getWebhook().isEnabled()) {
+                registerWebhook();
+                return;
+            }
             TelegramBotsApi api =  new TelegramBotsApi(DefaultBotSession.class);
             api.registerBot(telegramBot);
             System.out.println("Telegram бот успешно зарегистрирован");
@@ -28,5 +32,20 @@ public class TelegramBotConfig {
             throw new RuntimeException("Не удалось зарегистрировать Telegram бота", e);
         }
     }
-}
 
+    private void registerWebhook() throws TelegramApiException {
+        // Обновления принимает TelegramWebhookController на встроенном веб-сервере Spring
+        BotConfig.Webhook webhook = botConfig.getWebhook();
+        if (webhook.getSecretToken() == null || webhook.getSecretToken().isBlank()) {
+            // Без секрета любой, кто знает адрес webhook, мог бы отправлять боту поддельные обновления
+            throw new IllegalStateException(
+                    "Режим webhook требует секретного токена: задайте TELEGRAM_WEBHOOK_SECRET_TOKEN");
+        }
+        SetWebhook setWebhook = SetWebhook.builder()
+                .url(webhook.getUrl() + webhook.getPath())
+                .secretToken(webhook.getSecretToken())
+                .build();
+        telegramBot.execute(setWebhook);
+        System.out.println("Telegram бот успешно зарегистрирован в режиме webhook: " + setWebhook.getUrl());
+    }
+}
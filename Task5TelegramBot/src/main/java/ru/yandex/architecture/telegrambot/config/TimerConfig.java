@@ -0,0 +1,17 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "telegram.timer")
+public class TimerConfig {
+    // Шаг колеса: задержки округляются вверх до целого числа шагов
+    private Duration tickDuration = Duration.ofMillis(5);
+    // Число ячеек колеса; один оборот - tickDuration * ticksPerWheel
+    private int ticksPerWheel = 1024;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "telegram.typing")
+public class TypingConfig {
+    private boolean enabled = true;
+    // Telegram показывает «печатает...» около 5 секунд, статус обновляется чуть раньше
+    private Duration refreshInterval = Duration.ofMillis(4500);
+    // Предел показа индикатора, если обработку забыли завершить
+    private Duration maxDuration = Duration.ofMinutes(2);
+}
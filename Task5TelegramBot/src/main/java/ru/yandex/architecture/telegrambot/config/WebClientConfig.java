@@ -1,16 +1,106 @@
 package ru.yandex.architecture.telegrambot.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import org.reactivestreams.Publisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+import ru.yandex.architecture.telegrambot.dto.QueryResponseDeserializer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class WebClientConfig {
 
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider pythonApiConnectionProvider(PythonApiConfig apiConfig) {
+        PythonApiConfig.Pool pool = apiConfig.getPool();
+        return ConnectionProvider.builder("python-api")
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictionInterval())
+                // Метрики пула (reactor.netty.connection.provider.*) публикуются в Micrometer
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public HttpClient pythonApiHttpClient(ConnectionProvider pythonApiConnectionProvider, PythonApiConfig apiConfig) {
+        PythonApiConfig.Pool pool = apiConfig.getPool();
+        return HttpClient.create(pythonApiConnectionProvider)
+                .keepAlive(pool.isKeepAlive())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.getConnectTimeout().toMillis())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                // Таймауты действуют только на время запроса и снимаются при возврате соединения в пул
+                .responseTimeout(pool.getReadTimeout())
+                .doOnRequest((request, connection) -> connection.addHandlerLast(
+                        new WriteTimeoutHandler(pool.getWriteTimeout().toMillis(), TimeUnit.MILLISECONDS)));
+    }
+
     @Bean
-    public WebClient webClient() {
+    public WebClient webClient(HttpClient pythonApiHttpClient, PythonApiConfig apiConfig, ObjectMapper objectMapper) {
+
+        // Ответы Python API читаются потоково, невостребованные поля пропускаются
+        PythonApiConfig.Projection projection = apiConfig.getProjection();
+        SimpleModule projectionModule = new SimpleModule()
+                .addDeserializer(QueryResponse.class, new QueryResponseDeserializer(
+                        projection.isIncludeChunks(), projection.isIncludeReasoning()));
+        ObjectMapper jsonMapper = objectMapper.copy().registerModule(projectionModule);
+        // CBOR выбирается по Content-Type запроса и ответа, JSON остаётся запасным вариантом
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build().registerModule(projectionModule);
+
         return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(pythonApiHttpClient))
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(jsonMapper));
+                    // Типы указываются явно: без них кодеки CBOR объявляют и application/json
+                    // и, стоя перед стандартными, перехватили бы обмен в JSON
+                    codecs.customCodecs().register(new Jackson2CborDecoder(cborMapper, MediaType.APPLICATION_CBOR));
+                    codecs.customCodecs().register(new SingleValueCborEncoder(cborMapper));
+                })
                 .build();
     }
-}
 
+    /**
+     * Кодировщик CBOR для тела из одного значения. Стандартный Jackson2CborEncoder отказывается
+     * кодировать любой поток, а WebClient передаёт ему тело запроса как Mono.
+     */
+    static final class SingleValueCborEncoder extends Jackson2CborEncoder {
+
+        SingleValueCborEncoder(ObjectMapper mapper) {
+            super(mapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                       ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+            if (inputStream instanceof Mono<?> value) {
+                return value.map(v -> encodeValue(v, bufferFactory, elementType, mimeType, hints)).flux();
+            }
+            return super.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+        }
+    }
+}
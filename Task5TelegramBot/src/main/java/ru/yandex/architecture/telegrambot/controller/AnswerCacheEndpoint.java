@@ -0,0 +1,25 @@
+package ru.yandex.architecture.telegrambot.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import ru.yandex.architecture.telegrambot.service.cache.AnswerCache;
+
+import java.util.Map;
+
+/**
+ * Статистика кэша ответов: /actuator/answercache.
+ */
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "answercache")
+public class AnswerCacheEndpoint {
+
+    private final AnswerCache answerCache;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return answerCache.stats();
+    }
+}
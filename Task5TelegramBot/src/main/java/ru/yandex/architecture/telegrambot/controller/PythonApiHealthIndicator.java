@@ -0,0 +1,49 @@
+package ru.yandex.architecture.telegrambot.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+import ru.yandex.architecture.telegrambot.service.CircuitBreaker;
+import ru.yandex.architecture.telegrambot.service.HealthMonitor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Состояние Python API для /actuator/health и проверки готовности (/actuator/health/readiness).
+ * Читает снимок {@link HealthMonitor}, поэтому не обращается к сети.
+ */
+@Component
+@RequiredArgsConstructor
+public class PythonApiHealthIndicator implements HealthIndicator {
+
+    private final HealthMonitor healthMonitor;
+    private final CircuitBreaker circuitBreaker;
+
+    @Override
+    public Health health() {
+        HealthMonitor.Snapshot snapshot = healthMonitor.snapshot();
+        Map<String, Object> backends = new LinkedHashMap<>();
+        snapshot.backends().forEach((url, status) -> {
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("healthy", status.healthy());
+            if (status.latency() != null) {
+                details.put("latencyMs", status.latency().toMillis());
+            }
+            if (status.lastError() != null) {
+                details.put("lastError", status.lastError());
+            }
+            if (status.checkedAt() != null) {
+                details.put("checkedAt", status.checkedAt().toString());
+            }
+            backends.put(url, details);
+        });
+
+        Health.Builder builder = snapshot.anyHealthy() ? Health.up() : Health.down();
+        return builder
+                .withDetail("circuit", circuitBreaker.getState())
+                .withDetail("backends", backends)
+                .build();
+    }
+}
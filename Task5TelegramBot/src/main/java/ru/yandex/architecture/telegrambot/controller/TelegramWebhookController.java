@@ -0,0 +1,57 @@
+package ru.yandex.architecture.telegrambot.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import ru.yandex.architecture.telegrambot.TelegramBot;
+import ru.yandex.architecture.telegrambot.config.BotConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Принимает обновления Telegram в режиме webhook.
+ * Обновление только передаётся в диспетчер, поэтому Telegram сразу получает 200.
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "telegram.bot.webhook", name = "enabled", havingValue = "true")
+public class TelegramWebhookController {
+
+    private static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final TelegramBot telegramBot;
+    private final BotConfig botConfig;
+
+    @PostMapping("${telegram.bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(
+            @RequestHeader(value = SECRET_TOKEN_HEADER, required = false) String secretToken,
+            @RequestBody Update update) {
+        if (!isSecretTokenValid(secretToken)) {
+            log.warn("Отклонён запрос webhook с неверным секретным токеном");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        telegramBot.onUpdateReceived(update);
+        return ResponseEntity.ok().build();
+    }
+
+    private boolean isSecretTokenValid(String secretToken) {
+        String expected = botConfig.getWebhook().getSecretToken();
+        if (expected == null || expected.isBlank()) {
+            // Без секрета бот в режиме webhook не запускается; если он всё же не задан, запросы отклоняются
+            return false;
+        }
+        return secretToken != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8),
+                secretToken.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,26 @@
+package ru.yandex.architecture.telegrambot.dto;
+
+import java.time.Duration;
+
+/**
+ * Абсолютный срок обработки запроса пользователя.
+ * Задаётся при получении обновления и передаётся в Python API заголовком
+ * {@link #HEADER} (миллисекунды Unix-времени), чтобы сервис не продолжал работу,
+ * результат которой бот уже не ждёт.
+ */
+public record Deadline(long epochMillis, long nanoTime) {
+
+    public static final String HEADER = "X-Request-Deadline";
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.currentTimeMillis() + timeout.toMillis(), System.nanoTime() + timeout.toNanos());
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, nanoTime - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return nanoTime - System.nanoTime() <= 0;
+    }
+}
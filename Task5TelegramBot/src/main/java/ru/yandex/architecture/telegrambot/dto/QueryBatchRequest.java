@@ -0,0 +1,16 @@
+package ru.yandex.architecture.telegrambot.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryBatchRequest {
+    @JsonProperty("queries")
+    private List<QueryRequest> queries;
+}
@@ -0,0 +1,13 @@
+package ru.yandex.architecture.telegrambot.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class QueryBatchResponse {
+    // Ответы в порядке запросов пакета
+    @JsonProperty("results")
+    private List<QueryResponse> results;
+}
@@ -0,0 +1,21 @@
+package ru.yandex.architecture.telegrambot.dto;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Нормализованный ключ запроса: текст без лишних пробелов и регистра плюс topK.
+ * Запросы с одинаковым ключом дают одинаковый ответ RAG.
+ */
+public record QueryKey(String query, int topK) {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public static QueryKey of(QueryRequest request) {
+        String normalized = WHITESPACE.matcher(request.getQuery().trim())
+                .replaceAll(" ")
+                .toLowerCase(Locale.ROOT);
+        int topK = request.getTopK() != null ? request.getTopK() : 3;
+        return new QueryKey(normalized, topK);
+    }
+}
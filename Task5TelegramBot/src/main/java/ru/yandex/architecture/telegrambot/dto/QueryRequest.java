@@ -14,5 +14,11 @@ public class QueryRequest {
     
     @JsonProperty("top_k")
     private Integer topK = 3;
-}
 
+    // Проекция ответа: без этих полей Python API не передаёт рассуждения и тексты чанков
+    @JsonProperty("include_chunks")
+    private Boolean includeChunks = true;
+
+    @JsonProperty("include_reasoning")
+    private Boolean includeReasoning = true;
+}
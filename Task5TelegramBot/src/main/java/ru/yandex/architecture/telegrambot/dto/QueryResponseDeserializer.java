@@ -0,0 +1,67 @@
+package ru.yandex.architecture.telegrambot.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Потоковое чтение {@link QueryResponse} с учётом проекции.
+ * <p>
+ * Невостребованные поля (reasoning, chunks) пропускаются на уровне токенов: строка,
+ * которую не запросили через getText(), не декодируется, а массив чанков пропускается
+ * без создания объектов. Это защищает от лишних аллокаций и в случае, когда Python API
+ * не поддерживает проекцию и присылает ответ целиком.
+ */
+public class QueryResponseDeserializer extends StdDeserializer<QueryResponse> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean includeChunks;
+    private final boolean includeReasoning;
+
+    public QueryResponseDeserializer(boolean includeChunks, boolean includeReasoning) {
+        super(QueryResponse.class);
+        this.includeChunks = includeChunks;
+        this.includeReasoning = includeReasoning;
+    }
+
+    @Override
+    public QueryResponse deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (!p.isExpectedStartObjectToken()) {
+            return (QueryResponse) ctxt.handleUnexpectedToken(QueryResponse.class, p);
+        }
+        QueryResponse response = new QueryResponse();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "answer" -> response.setAnswer(p.getText());
+                case "chunks_count" -> response.setChunksCount(p.getValueAsInt());
+                case "reasoning" -> {
+                    if (includeReasoning) {
+                        response.setReasoning(p.getText());
+                    }
+                }
+                case "chunks" -> {
+                    if (includeChunks && value == JsonToken.START_ARRAY) {
+                        JavaType type = ctxt.getTypeFactory()
+                                .constructCollectionType(List.class, QueryResponse.ChunkInfo.class);
+                        response.setChunks(ctxt.readValue(p, type));
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.yandex.architecture.telegrambot.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Данные одного события потока /query_stream.
+ */
+@Data
+public class QueryStreamChunk {
+    // Очередной фрагмент ответа
+    @JsonProperty("delta")
+    private String delta;
+
+    // Приходит в завершающем событии done
+    @JsonProperty("chunks_count")
+    private Integer chunksCount;
+
+    // Приходит в событии error
+    @JsonProperty("detail")
+    private String detail;
+}
@@ -0,0 +1,111 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+import ru.yandex.architecture.telegrambot.config.AdmissionConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Контроль допуска запросов к RAG перед постановкой в очередь.
+ * Ограничивает общее число принятых запросов и число запросов одного чата,
+ * чтобы при замедлении Python API не копить обновления в памяти.
+ */
+@Service
+public class AdmissionController {
+
+    private final AdmissionConfig config;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Map<Long, Integer> perChat = new ConcurrentHashMap<>();
+
+    private final Counter queueFullCounter;
+    private final Counter chatLimitCounter;
+    private final Timer waitTimer;
+
+    public AdmissionController(AdmissionConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.queueFullCounter = Counter.builder("telegram.admission.rejected")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.chatLimitCounter = Counter.builder("telegram.admission.rejected")
+                .tag("reason", "chat_limit")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("telegram.admission.wait")
+                .register(meterRegistry);
+        Gauge.builder("telegram.admission.queue.size", waiting, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("telegram.admission.pending", pending, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Пытается принять запрос чата.
+     *
+     * @return разрешение, которое нужно освободить после обработки, или null, если запрос отклонён
+     */
+    public Permit tryAcquire(Long chatId) {
+        if (pending.incrementAndGet() > config.getMaxPending()) {
+            pending.decrementAndGet();
+            queueFullCounter.increment();
+            return null;
+        }
+
+        boolean[] admitted = {false};
+        perChat.compute(chatId, (id, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= config.getMaxInFlightPerChat()) {
+                return count;
+            }
+            admitted[0] = true;
+            return current + 1;
+        });
+        if (!admitted[0]) {
+            pending.decrementAndGet();
+            chatLimitCounter.increment();
+            return null;
+        }
+
+        waiting.incrementAndGet();
+        return new Permit(chatId);
+    }
+
+    public class Permit {
+        private final Long chatId;
+        private final long admittedAt = System.nanoTime();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Long chatId) {
+            this.chatId = chatId;
+        }
+
+        /**
+         * Отмечает начало обработки и фиксирует время ожидания в очереди.
+         */
+        public void start() {
+            if (started.compareAndSet(false, true)) {
+                waiting.decrementAndGet();
+                waitTimer.record(System.nanoTime() - admittedAt, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (started.compareAndSet(false, true)) {
+                waiting.decrementAndGet();
+            }
+            perChat.computeIfPresent(chatId, (id, count) -> count > 1 ? count - 1 : null);
+            pending.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.DomainSocketAddress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+
+import java.io.FileNotFoundException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * HTTP-клиенты реплик Python API.
+ * <p>
+ * Реплика на той же машине может быть доступна через Unix domain socket (python.api.unix-socket):
+ * запросы идут мимо TCP-стека loopback. Если нативный транспорт epoll недоступен, используется TCP;
+ * если соединиться через сокет не удалось (файла сокета нет или соединение отвергнуто), запрос
+ * повторяется по TCP. Ошибки после установки соединения не повторяются: запрос мог уже дойти
+ * до реплики, а повтор запустил бы генерацию ответа второй раз.
+ */
+@Slf4j
+@Service
+public class BackendClients {
+
+    private final Map<String, WebClient> tcpClients = new HashMap<>();
+    private final Map<String, WebClient> socketClients = new HashMap<>();
+
+    public BackendClients(PythonApiConfig apiConfig, WebClient webClient, HttpClient pythonApiHttpClient) {
+        for (String url : apiConfig.backendUrls()) {
+            tcpClients.put(url, webClient.mutate().baseUrl(url).build());
+
+            String socketPath = apiConfig.unixSocketFor(url);
+            if (socketPath == null || socketPath.isBlank()) {
+                continue;
+            }
+            if (!Epoll.isAvailable()) {
+                log.warn("Unix domain socket {} для {} не используется: нативный транспорт недоступен ({})",
+                        socketPath, url, Epoll.unavailabilityCause().getMessage());
+                continue;
+            }
+            // Адрес соединения берётся из remoteAddress, только если URI запроса относительный,
+            // поэтому у клиента сокета нет baseUrl, а заголовок Host задаётся явно
+            HttpClient socketHttpClient = pythonApiHttpClient.remoteAddress(() -> new DomainSocketAddress(socketPath));
+            socketClients.put(url, webClient.mutate()
+                    .clientConnector(new ReactorClientHttpConnector(socketHttpClient))
+                    .defaultHeader(HttpHeaders.HOST, URI.create(url).getAuthority())
+                    .build());
+            log.info("Запросы к {} идут через Unix domain socket {}", url, socketPath);
+        }
+    }
+
+    /**
+     * Выполняет вызов реплики через сокет, если он настроен, иначе по TCP.
+     * Вызов должен использовать относительные URI, например uri("/query").
+     */
+    public <T> Mono<T> execute(String url, Function<WebClient, Mono<T>> call) {
+        WebClient tcpClient = tcpClients.get(url);
+        WebClient socketClient = socketClients.get(url);
+        if (socketClient == null) {
+            return call.apply(tcpClient);
+        }
+        return call.apply(socketClient)
+                .onErrorResume(BackendClients::isConnectFailure, e -> {
+                    log.debug("Не удалось обратиться к {} через Unix domain socket, используется TCP: {}",
+                            url, e.getMessage());
+                    return call.apply(tcpClient);
+                });
+    }
+
+    /**
+     * Потоковый вариант {@link #execute}. Ошибка соединения возникает до отправки запроса,
+     * поэтому повтор по TCP не дублирует уже полученные данные.
+     */
+    public <T> Flux<T> executeMany(String url, Function<WebClient, Flux<T>> call) {
+        WebClient tcpClient = tcpClients.get(url);
+        WebClient socketClient = socketClients.get(url);
+        if (socketClient == null) {
+            return call.apply(tcpClient);
+        }
+        return call.apply(socketClient)
+                .onErrorResume(BackendClients::isConnectFailure, e -> {
+                    log.debug("Не удалось обратиться к {} через Unix domain socket, используется TCP: {}",
+                            url, e.getMessage());
+                    return call.apply(tcpClient);
+                });
+    }
+
+    /**
+     * Соединение через сокет не установлено, и запрос до реплики точно не дошёл.
+     * Нативный транспорт сообщает об отсутствии файла сокета исключением FileNotFoundException.
+     */
+    static boolean isConnectFailure(Throwable e) {
+        if (!(e instanceof WebClientRequestException)) {
+            return false;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof FileNotFoundException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
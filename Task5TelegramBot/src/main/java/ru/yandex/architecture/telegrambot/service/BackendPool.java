@@ -0,0 +1,124 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Набор реплик Python API с клиентской балансировкой.
+ * Реплика для запроса выбирается по правилу «двух случайных»: из двух случайных доступных
+ * реплик берётся та, у которой меньше незавершённых запросов. Доступность реплик берётся
+ * из снимка {@link HealthMonitor}.
+ */
+@Slf4j
+@Service
+public class BackendPool {
+
+    private final HealthMonitor healthMonitor;
+    private final List<Backend> backends;
+
+    public BackendPool(PythonApiConfig apiConfig, HealthMonitor healthMonitor, MeterRegistry meterRegistry) {
+        this.healthMonitor = healthMonitor;
+        List<String> urls = apiConfig.backendUrls();
+        this.backends = urls.stream().map(url -> new Backend(url, apiConfig.wireFormatFor(url))).toList();
+
+        for (Backend backend : backends) {
+            Gauge.builder("python.api.backend.outstanding", backend, Backend::outstanding)
+                    .tag("backend", backend.getUrl())
+                    .register(meterRegistry);
+        }
+        log.info("Реплики Python API: {}", backends.stream()
+                .map(backend -> backend.getUrl() + " (" + backend.getWireFormat() + ")").toList());
+    }
+
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    /**
+     * Выбирает реплику для очередного запроса.
+     * Если доступных реплик нет, выбор идёт среди всех: запрос всё равно может пройти.
+     */
+    public Backend select() {
+        HealthMonitor.Snapshot health = healthMonitor.snapshot();
+        List<Backend> candidates = backends.stream().filter(b -> health.isHealthy(b.getUrl())).toList();
+        if (candidates.isEmpty()) {
+            candidates = backends;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Backend a = candidates.get(first);
+        Backend b = candidates.get(second);
+        return a.outstanding() <= b.outstanding() ? a : b;
+    }
+
+    /**
+     * Выбирает реплику, отличную от указанной, для дублирующего запроса.
+     * Если других реплик нет, возвращает null: дубль на ту же реплику только добавил бы ей нагрузки.
+     */
+    public Backend selectOther(Backend exclude) {
+        List<Backend> others = backends.stream().filter(b -> b != exclude).toList();
+        if (others.isEmpty()) {
+            return null;
+        }
+        HealthMonitor.Snapshot health = healthMonitor.snapshot();
+        List<Backend> healthy = others.stream().filter(b -> health.isHealthy(b.getUrl())).toList();
+        List<Backend> candidates = healthy.isEmpty() ? others : healthy;
+        return candidates.stream().min((a, b) -> Integer.compare(a.outstanding(), b.outstanding())).orElse(null);
+    }
+
+    @Slf4j
+    public static class Backend {
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile PythonApiConfig.WireFormat wireFormat;
+
+        private Backend(String url, PythonApiConfig.WireFormat wireFormat) {
+            this.url = url;
+            this.wireFormat = wireFormat;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public PythonApiConfig.WireFormat getWireFormat() {
+            return wireFormat;
+        }
+
+        /**
+         * Реплика не принимает двоичный формат: дальнейший обмен с ней идёт в JSON.
+         */
+        public void fallbackToJson() {
+            if (wireFormat != PythonApiConfig.WireFormat.JSON) {
+                log.warn("Реплика Python API {} не поддерживает {}, используется JSON", url, wireFormat);
+                wireFormat = PythonApiConfig.WireFormat.JSON;
+            }
+        }
+
+        public int outstanding() {
+            return outstanding.get();
+        }
+
+        public void acquire() {
+            outstanding.incrementAndGet();
+        }
+
+        public void release() {
+            outstanding.decrementAndGet();
+        }
+    }
+}
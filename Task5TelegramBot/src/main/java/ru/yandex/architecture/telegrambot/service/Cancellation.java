@@ -0,0 +1,33 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Признак отмены обработки запроса чата.
+ * Привязанные цепочки Reactor завершаются без значения, а подписка на вызов Python API
+ * отменяется, как только вызван {@link #cancel()}.
+ */
+public final class Cancellation {
+
+    private final Sinks.One<Boolean> signal = Sinks.one();
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+        signal.tryEmitValue(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public <T> Mono<T> bind(Mono<T> mono) {
+        return mono.takeUntilOther(signal.asMono());
+    }
+
+    public <T> Flux<T> bind(Flux<T> flux) {
+        return flux.takeUntilOther(signal.asMono());
+    }
+}
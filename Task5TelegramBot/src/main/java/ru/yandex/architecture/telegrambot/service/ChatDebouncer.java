@@ -0,0 +1,167 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import ru.yandex.architecture.telegrambot.config.DebounceConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Объединяет вопрос, набранный несколькими сообщениями подряд, в один запрос к RAG.
+ * <p>
+ * Сообщения чата копятся, пока между ними меньше quietWindow (но не дольше maxWait
+ * с первого сообщения), и затем уходят одним запросом. Если запрос по предыдущим сообщениям
+ * уже выполняется и начат не раньше mergeInFlightWithin, он отменяется через {@link ChatQueries},
+ * а его текст становится началом нового запроса.
+ */
+@Slf4j
+@Service
+public class ChatDebouncer {
+
+    private final DebounceConfig config;
+    private final TimerWheel timerWheel;
+    private final ChatQueries chatQueries;
+    private final Map<Long, ChatState> chats = new ConcurrentHashMap<>();
+    // Поколение отложенной отправки: сработавший, но уже заменённый таймер ничего не отправляет
+    private final AtomicLong generations = new AtomicLong();
+
+    private final Counter fragmentCounter;
+    private final Counter queryCounter;
+    private final Counter cancelledCounter;
+
+    public ChatDebouncer(DebounceConfig config, TimerWheel timerWheel, ChatQueries chatQueries,
+                         MeterRegistry meterRegistry) {
+        this.config = config;
+        this.timerWheel = timerWheel;
+        this.chatQueries = chatQueries;
+        this.fragmentCounter = Counter.builder("telegram.debounce.fragments")
+                .register(meterRegistry);
+        this.queryCounter = Counter.builder("telegram.debounce.queries")
+                .register(meterRegistry);
+        this.cancelledCounter = Counter.builder("telegram.debounce.cancelled")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Добавляет сообщение чата. Когда вопрос закончен, submit получает все его сообщения.
+     */
+    public void offer(Long chatId, ChatQueries.Fragment fragment, Consumer<List<ChatQueries.Fragment>> submit) {
+        fragmentCounter.increment();
+        boolean[] full = {false};
+        long[] generation = {0};
+        chats.compute(chatId, (id, current) -> {
+            ChatState state = current != null ? current : new ChatState();
+            long now = System.nanoTime();
+            if (state.fragments.isEmpty()) {
+                state.firstAt = now;
+                // Пользователь дописал вопрос, пока по его началу уже шёл запрос
+                List<ChatQueries.Fragment> inFlight = chatQueries.cancelRecent(id, config.getMergeInFlightWithin());
+                if (inFlight != null) {
+                    cancelledCounter.increment();
+                    state.fragments.addAll(inFlight);
+                }
+            }
+            state.fragments.add(fragment);
+            state.submit = submit;
+            if (state.quietTimer != null) {
+                state.quietTimer.dispose();
+                state.quietTimer = null;
+            }
+            state.generation = generations.incrementAndGet();
+            generation[0] = state.generation;
+            long untilMaxWait = state.firstAt + config.getMaxWait().toNanos() - now;
+            long delay = Math.min(config.getQuietWindow().toNanos(), untilMaxWait);
+            if (state.fragments.size() >= config.getMaxFragments() || delay <= 0) {
+                full[0] = true;
+            } else {
+                state.quietTimer = timerWheel.schedule(Duration.ofNanos(delay), () -> flush(id, generation[0]));
+            }
+            return state;
+        });
+        if (full[0]) {
+            flush(chatId, generation[0]);
+        }
+    }
+
+    /**
+     * Применяет исправление к сообщению, которое ещё ждёт отправки.
+     *
+     * @return true, если сообщение найдено среди накопленных
+     */
+    public boolean edit(Long chatId, Integer messageId, String text) {
+        boolean[] found = {false};
+        chats.computeIfPresent(chatId, (id, state) -> {
+            for (int i = 0; i < state.fragments.size(); i++) {
+                if (Objects.equals(state.fragments.get(i).messageId(), messageId)) {
+                    state.fragments.set(i, new ChatQueries.Fragment(messageId, text));
+                    found[0] = true;
+                }
+            }
+            return state;
+        });
+        return found[0];
+    }
+
+    /**
+     * Отбрасывает накопленные, но ещё не отправленные сообщения чата (команда /cancel).
+     *
+     * @return true, если было что отбрасывать
+     */
+    public boolean discard(Long chatId) {
+        ChatState state = chats.remove(chatId);
+        if (state == null) {
+            return false;
+        }
+        if (state.quietTimer != null) {
+            state.quietTimer.dispose();
+        }
+        return true;
+    }
+
+    private void flush(Long chatId, long generation) {
+        ChatState[] removed = {null};
+        chats.computeIfPresent(chatId, (id, state) -> {
+            if (state.generation != generation) {
+                // Новое сообщение успело заменить этот таймер: отправкой займётся новый
+                return state;
+            }
+            removed[0] = state;
+            return null;
+        });
+        ChatState ready = removed[0];
+        if (ready == null) {
+            return;
+        }
+        if (ready.quietTimer != null) {
+            ready.quietTimer.dispose();
+        }
+        queryCounter.increment();
+        if (ready.fragments.size() > 1) {
+            log.info("Объединено сообщений чата {}: {}", chatId, ready.fragments.size());
+        }
+        ready.submit.accept(ready.fragments);
+    }
+
+    private static final class ChatState {
+        // Поля изменяются только внутри compute по ключу чата
+        private final List<ChatQueries.Fragment> fragments = new ArrayList<>();
+        private Consumer<List<ChatQueries.Fragment>> submit;
+        private long firstAt;
+        private long generation;
+        private Disposable quietTimer;
+    }
+}
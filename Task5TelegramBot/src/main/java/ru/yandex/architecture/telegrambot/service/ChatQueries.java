@@ -0,0 +1,173 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Текущий вопрос каждого чата: побеждает последний.
+ * Новый вопрос, исправленный вопрос или команда /cancel отменяют запрос, который ещё
+ * выполняется или ждёт в очереди чата, поэтому устаревший ответ не отправляется,
+ * а вызов Python API отменяется.
+ * <p>
+ * Вопрос может состоять из нескольких сообщений (см. {@link ChatDebouncer}); исправление
+ * любого из них применяется к вопросу целиком.
+ */
+@Service
+public class ChatQueries {
+
+    private final Map<Long, Query> inFlight = new ConcurrentHashMap<>();
+    // Последний вопрос чата нужен и после ответа: его исправление запускает запрос заново
+    private final Cache<Long, List<Fragment>> lastQuestions = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    private final Counter supersededCounter;
+    private final Counter cancelledCounter;
+
+    public ChatQueries(MeterRegistry meterRegistry) {
+        this.supersededCounter = Counter.builder("telegram.queries.cancelled")
+                .tag("reason", "superseded")
+                .register(meterRegistry);
+        this.cancelledCounter = Counter.builder("telegram.queries.cancelled")
+                .tag("reason", "command")
+                .register(meterRegistry);
+        Gauge.builder("telegram.queries.in.flight", inFlight, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Создаёт запрос по вопросу, ещё не затрагивая текущий запрос чата.
+     */
+    public Query newQuery(List<Fragment> fragments) {
+        return new Query(List.copyOf(fragments));
+    }
+
+    /**
+     * Делает принятый к обработке запрос текущим для чата и отменяет предыдущий.
+     * Вызывается только после того, как запрос прошёл контроль допуска и попал в очередь чата,
+     * чтобы отклонённый вопрос не отменял ответ на предыдущий.
+     */
+    public void start(Long chatId, Query query) {
+        Query[] previous = {null};
+        inFlight.compute(chatId, (id, current) -> {
+            // Запрос мог успеть завершиться до регистрации
+            if (query.done) {
+                return current;
+            }
+            previous[0] = current;
+            return query;
+        });
+        if (previous[0] != null) {
+            previous[0].cancellation.cancel();
+            supersededCounter.increment();
+        }
+        lastQuestions.put(chatId, query.fragments);
+    }
+
+    /**
+     * Обработка запроса завершена (или отменена).
+     */
+    public void finished(Long chatId, Query query) {
+        query.done = true;
+        inFlight.computeIfPresent(chatId, (id, current) -> current == query ? null : current);
+    }
+
+    /**
+     * Отменяет текущий вопрос чата по команде /cancel.
+     *
+     * @return true, если было что отменять
+     */
+    public boolean cancel(Long chatId) {
+        Query current = inFlight.remove(chatId);
+        if (current == null) {
+            return false;
+        }
+        current.cancellation.cancel();
+        cancelledCounter.increment();
+        return true;
+    }
+
+    /**
+     * Отменяет текущий вопрос, если он начат не раньше заданного срока, и возвращает его сообщения.
+     * Используется, когда пользователь дописывает вопрос следующим сообщением.
+     *
+     * @return сообщения отменённого вопроса или null
+     */
+    public List<Fragment> cancelRecent(Long chatId, Duration within) {
+        Query[] taken = {null};
+        inFlight.computeIfPresent(chatId, (id, current) -> {
+            if (System.nanoTime() - current.createdAt >= within.toNanos()) {
+                return current;
+            }
+            taken[0] = current;
+            return null;
+        });
+        if (taken[0] == null) {
+            return null;
+        }
+        taken[0].cancellation.cancel();
+        supersededCounter.increment();
+        return taken[0].fragments;
+    }
+
+    /**
+     * Применяет исправление сообщения к последнему вопросу чата.
+     *
+     * @return сообщения исправленного вопроса или null, если сообщение не входит в последний вопрос
+     */
+    public List<Fragment> edit(Long chatId, Integer messageId, String text) {
+        List<Fragment> question = lastQuestions.getIfPresent(chatId);
+        if (question == null) {
+            return null;
+        }
+        List<Fragment> edited = new ArrayList<>(question);
+        for (int i = 0; i < edited.size(); i++) {
+            if (Objects.equals(edited.get(i).messageId(), messageId)) {
+                edited.set(i, new Fragment(messageId, text));
+                return edited;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Сообщение пользователя, входящее в вопрос.
+     */
+    public record Fragment(Integer messageId, String text) {
+    }
+
+    /**
+     * Запрос по вопросу чата.
+     */
+    public static final class Query {
+        private final List<Fragment> fragments;
+        private final Cancellation cancellation = new Cancellation();
+        private final long createdAt = System.nanoTime();
+        private volatile boolean done;
+
+        private Query(List<Fragment> fragments) {
+            this.fragments = fragments;
+        }
+
+        public String text() {
+            return fragments.stream().map(Fragment::text).collect(Collectors.joining(" "));
+        }
+
+        public Cancellation cancellation() {
+            return cancellation;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.yandex.architecture.telegrambot.config.CircuitBreakerConfig;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Автоматический выключатель вызовов Python API.
+ * <p>
+ * В замкнутом состоянии считает долю ошибок и медленных вызовов в скользящем окне последних
+ * windowSize вызовов. При превышении порога размыкается: вызовы сразу завершаются
+ * {@link CallNotPermittedException} без обращения к сети. Через waitInOpenState (или раньше,
+ * если фоновая проверка /health прошла успешно) переходит в полуоткрытое состояние и
+ * пропускает halfOpenCalls пробных вызовов, по которым решает, замкнуться или снова разомкнуться.
+ */
+@Slf4j
+@Service
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final CircuitBreakerConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final byte[] window;
+    private final Counter notPermittedCounter;
+
+    private volatile State state = State.CLOSED;
+    private long openUntilNanos;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slowCalls;
+    private int halfOpenStarted;
+    private int halfOpenCompleted;
+    private int halfOpenFailures;
+    private int halfOpenSlowCalls;
+
+    public CircuitBreaker(CircuitBreakerConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.window = new byte[Math.max(1, config.getWindowSize())];
+        this.notPermittedCounter = Counter.builder("python.api.circuit.not.permitted")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("python.api.circuit.state", this, b -> b.state.ordinal())
+                .description("0 - замкнут, 1 - разомкнут, 2 - полуоткрыт")
+                .register(meterRegistry);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Выполняет вызов через выключатель.
+     *
+     * @param failure ошибки, которые говорят о неисправности Python API; остальные ошибки
+     *                (отказ в запросе, истёкший срок клиента) не учитываются
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call, Predicate<Throwable> failure) {
+        if (!config.isEnabled()) {
+            return Mono.defer(call);
+        }
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                notPermittedCounter.increment();
+                return Mono.error(new CallNotPermittedException());
+            }
+            long startedAt = System.nanoTime();
+            return call.get()
+                    .doOnSuccess(result -> onResult(System.nanoTime() - startedAt, false))
+                    .doOnError(e -> {
+                        if (failure.test(e)) {
+                            onResult(System.nanoTime() - startedAt, true);
+                        } else {
+                            onIgnored();
+                        }
+                    })
+                    .doOnCancel(this::onIgnored);
+        });
+    }
+
+    /**
+     * Фоновая проверка показала, что Python API доступен: разомкнутый выключатель
+     * сразу переходит к пробным вызовам, не дожидаясь waitInOpenState.
+     */
+    public void onHealthCheckPassed() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                transitionTo(State.HALF_OPEN);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openUntilNanos < 0) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenStarted >= config.getHalfOpenCalls()) {
+                    return false;
+                }
+                halfOpenStarted++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onResult(long durationNanos, boolean failed) {
+        boolean slow = durationNanos > config.getSlowCallDuration().toNanos();
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (halfOpenCompleted >= halfOpenStarted) {
+                    // Вызов начат ещё до размыкания, пробным он не считается
+                    return;
+                }
+                halfOpenCompleted++;
+                halfOpenFailures += failed ? 1 : 0;
+                halfOpenSlowCalls += slow ? 1 : 0;
+                if (halfOpenCompleted >= config.getHalfOpenCalls()) {
+                    transitionTo(exceedsThresholds(halfOpenFailures, halfOpenSlowCalls, halfOpenCompleted)
+                            ? State.OPEN : State.CLOSED);
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                return;
+            }
+            record((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+            if (recorded >= config.getMinimumCalls() && exceedsThresholds(failures, slowCalls, recorded)) {
+                transitionTo(State.OPEN);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onIgnored() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && halfOpenStarted > halfOpenCompleted) {
+                halfOpenStarted--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(byte outcome) {
+        if (recorded == window.length) {
+            byte evicted = window[next];
+            failures -= (evicted & FAILED) != 0 ? 1 : 0;
+            slowCalls -= (evicted & SLOW) != 0 ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        window[next] = outcome;
+        failures += (outcome & FAILED) != 0 ? 1 : 0;
+        slowCalls += (outcome & SLOW) != 0 ? 1 : 0;
+        next = (next + 1) % window.length;
+    }
+
+    private boolean exceedsThresholds(int failed, int slow, int total) {
+        return failed * 100.0 / total >= config.getFailureRateThreshold()
+                || slow * 100.0 / total >= config.getSlowCallRateThreshold();
+    }
+
+    private void transitionTo(State newState) {
+        log.warn("Выключатель Python API: {} -> {}", state, newState);
+        state = newState;
+        switch (newState) {
+            case OPEN -> openUntilNanos = System.nanoTime() + config.getWaitInOpenState().toNanos();
+            case HALF_OPEN -> {
+                halfOpenStarted = 0;
+                halfOpenCompleted = 0;
+                halfOpenFailures = 0;
+                halfOpenSlowCalls = 0;
+            }
+            case CLOSED -> {
+                recorded = 0;
+                next = 0;
+                failures = 0;
+                slowCalls = 0;
+            }
+        }
+    }
+
+    /**
+     * Вызов не выполнен: выключатель разомкнут.
+     */
+    public static class CallNotPermittedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public CallNotPermittedException() {
+            super("Python API временно недоступен: выключатель разомкнут");
+        }
+    }
+}
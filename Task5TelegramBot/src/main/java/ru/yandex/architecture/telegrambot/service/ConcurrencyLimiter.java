@@ -0,0 +1,259 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import ru.yandex.architecture.telegrambot.config.LimiterConfig;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Адаптивный ограничитель параллельных вызовов Python API (градиентный алгоритм).
+ * <p>
+ * Лимит подстраивается по отношению долгосрочной средней задержки к текущей: пока задержка
+ * не растёт, лимит увеличивается на величину порядка sqrt(limit), при росте задержки -
+ * уменьшается пропорционально. Таймауты и ошибки сервера уменьшают лимит мультипликативно.
+ * Запросы сверх лимита ждут в ограниченной очереди (FIFO), при её переполнении сразу отклоняются.
+ * Пока в очереди кто-то ждёт, новые запросы встают за ним, даже если освободилось место.
+ */
+@Slf4j
+@Service
+public class ConcurrencyLimiter {
+
+    private final LimiterConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private final Counter shedCounter;
+
+    private volatile double limit;
+    private volatile int inFlight;
+    private volatile double shortRtt;
+    private volatile double longRtt;
+
+    public ConcurrencyLimiter(LimiterConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.limit = config.getInitialLimit();
+        this.shedCounter = Counter.builder("python.api.limiter.shed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("python.api.limiter.limit", this, l -> l.limit)
+                .register(meterRegistry);
+        Gauge.builder("python.api.limiter.in.flight", this, l -> l.inFlight)
+                .register(meterRegistry);
+        Gauge.builder("python.api.limiter.queue.size", this, ConcurrencyLimiter::queueSize)
+                .register(meterRegistry);
+        Gauge.builder("python.api.limiter.rtt.short", this, l -> l.shortRtt / 1_000_000.0)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("python.api.limiter.rtt.long", this, l -> l.longRtt / 1_000_000.0)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        if (!config.isEnabled()) {
+            return Mono.defer(call);
+        }
+        return acquire().flatMap(permit -> Mono.defer(call)
+                .doOnSuccess(result -> permit.success())
+                .doOnError(permit::failure)
+                .doFinally(signal -> permit.release()));
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.create(sink -> {
+            Permit permit = new Permit();
+            Waiter waiter = new Waiter(sink, permit);
+            lock.lock();
+            try {
+                if (queue.isEmpty() && inFlight < (int) limit) {
+                    inFlight++;
+                } else if (queue.size() < config.getMaxQueue()) {
+                    queue.addLast(waiter);
+                    sink.onCancel(() -> cancel(waiter));
+                    return;
+                } else {
+                    shedCounter.increment();
+                    sink.error(new LimitExceededException(
+                            "Превышен лимит параллельных запросов к Python API: " + (int) limit));
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Если подписчик отменился, разрешение не дойдёт до вызова и возвращается здесь
+            sink.onCancel(() -> cancel(waiter));
+            permit.start();
+            sink.success(permit);
+        });
+    }
+
+    private void cancel(Waiter waiter) {
+        boolean removed;
+        lock.lock();
+        try {
+            removed = queue.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+        if (!removed) {
+            // Разрешение уже выдано, но до вызова дело не дошло
+            waiter.permit.release();
+        }
+    }
+
+    private void releaseSlot() {
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            inFlight--;
+            granted = drainQueue();
+        } finally {
+            lock.unlock();
+        }
+        grant(granted);
+    }
+
+    /**
+     * Забирает из очереди столько ожидающих, сколько мест свободно при текущем лимите.
+     * Вызывается под блокировкой, разрешения выдаются после её снятия.
+     */
+    private List<Waiter> drainQueue() {
+        List<Waiter> granted = new ArrayList<>();
+        while (inFlight < (int) limit && !queue.isEmpty()) {
+            granted.add(queue.pollFirst());
+            inFlight++;
+        }
+        return granted;
+    }
+
+    private static void grant(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            waiter.permit.start();
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    private void onSample(long rttNanos) {
+        List<Waiter> granted = List.of();
+        lock.lock();
+        try {
+            double rtt = rttNanos;
+            if (longRtt == 0) {
+                longRtt = rtt;
+                shortRtt = rtt;
+                return;
+            }
+            shortRtt = rtt;
+            double alpha = 2.0 / (config.getLongWindow() + 1);
+            longRtt = longRtt * (1 - alpha) + rtt * alpha;
+            // Если задержка долго держится ниже средней, средняя быстрее подтягивается к ней
+            if (longRtt / shortRtt > 2) {
+                longRtt *= 0.95;
+            }
+            // Не повышаем лимит, пока он не используется хотя бы наполовину
+            if (inFlight < limit / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, config.getRttTolerance() * longRtt / shortRtt));
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            setLimit(limit * (1 - config.getSmoothing()) + newLimit * config.getSmoothing());
+            // Выросший лимит сразу достаётся тем, кто ждёт в очереди
+            granted = drainQueue();
+        } finally {
+            lock.unlock();
+        }
+        grant(granted);
+    }
+
+    private void onDrop() {
+        lock.lock();
+        try {
+            setLimit(limit * config.getBackoffRatio());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void setLimit(double newLimit) {
+        double clamped = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), newLimit));
+        if ((int) clamped != (int) limit) {
+            log.debug("Лимит параллельных запросов к Python API: {} -> {}", (int) limit, (int) clamped);
+        }
+        limit = clamped;
+    }
+
+    private int queueSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Waiter(MonoSink<Permit> sink, Permit permit) {
+    }
+
+    private class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private long startedAt;
+
+        private void start() {
+            startedAt = System.nanoTime();
+        }
+
+        private void success() {
+            onSample(System.nanoTime() - startedAt);
+        }
+
+        private void failure(Throwable error) {
+            if (isOverload(error)) {
+                onDrop();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                releaseSlot();
+            }
+        }
+    }
+
+    private static boolean isOverload(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError();
+        }
+        return error instanceof TimeoutException || error instanceof WebClientRequestException;
+    }
+
+    /**
+     * Запрос отклонён ограничителем без обращения к Python API.
+     */
+    public static class LimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+}
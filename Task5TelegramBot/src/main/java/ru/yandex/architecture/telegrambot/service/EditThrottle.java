@@ -0,0 +1,92 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.architecture.telegrambot.config.StreamingConfig;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Темп правок сообщений при потоковой выдаче ответа.
+ * Интервал между правками одного сообщения не меньше minEditInterval и растёт с числом
+ * одновременных потоков, чтобы все потоки вместе укладывались в globalEditsPerSecond.
+ * Ответ 429 от Bot API увеличивает интервал (не меньше чем до retry_after), каждая
+ * успешная правка понемногу возвращает его к минимуму.
+ */
+@Slf4j
+@Service
+public class EditThrottle {
+
+    private static final double DECAY = 0.9;
+
+    private final StreamingConfig config;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong backoffNanos;
+
+    private final Counter editCounter;
+    private final Counter rateLimitedCounter;
+
+    public EditThrottle(StreamingConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.backoffNanos = new AtomicLong(config.getMinEditInterval().toNanos());
+        this.editCounter = Counter.builder("telegram.streaming.edits")
+                .tag("result", "ok")
+                .register(meterRegistry);
+        this.rateLimitedCounter = Counter.builder("telegram.streaming.edits")
+                .tag("result", "rate_limited")
+                .register(meterRegistry);
+        Gauge.builder("telegram.streaming.active", activeStreams, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("telegram.streaming.edit.interval", this, t -> t.nextInterval().toMillis())
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public void streamStarted() {
+        activeStreams.incrementAndGet();
+    }
+
+    public void streamFinished() {
+        activeStreams.decrementAndGet();
+    }
+
+    /**
+     * Пауза перед следующей правкой сообщения.
+     */
+    public Duration nextInterval() {
+        long shareNanos = Math.max(1, activeStreams.get()) * 1_000_000_000L
+                / Math.max(1, config.getGlobalEditsPerSecond());
+        long nanos = Math.max(backoffNanos.get(), shareNanos);
+        return Duration.ofNanos(Math.min(nanos, config.getMaxEditInterval().toNanos()));
+    }
+
+    public void onEditSucceeded() {
+        editCounter.increment();
+        long min = config.getMinEditInterval().toNanos();
+        backoffNanos.updateAndGet(current -> Math.max(min, (long) (current * DECAY)));
+    }
+
+    public void onRateLimited(Duration retryAfter) {
+        rateLimitedCounter.increment();
+        long max = config.getMaxEditInterval().toNanos();
+        long updated = backoffNanos.updateAndGet(current ->
+                Math.min(max, Math.max(current * 2, retryAfter.toNanos())));
+        log.warn("Bot API ограничил частоту правок, интервал увеличен до {} мс", updated / 1_000_000);
+    }
+}
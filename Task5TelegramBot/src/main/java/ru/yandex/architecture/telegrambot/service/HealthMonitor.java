@@ -0,0 +1,177 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Фоновая проверка реплик Python API.
+ * <p>
+ * С периодом healthCheckInterval опрашивает /health всех реплик и публикует неизменяемый
+ * снимок их состояния (доступность, задержка, последняя ошибка). Команда /health, проверка
+ * готовности и балансировщик читают снимок без блокировок и без обращения к сети.
+ */
+@Slf4j
+@Service
+public class HealthMonitor {
+
+    private final PythonApiConfig apiConfig;
+    private final BackendClients backendClients;
+    private final IndexVersionTracker indexVersionTracker;
+    private final CircuitBreaker circuitBreaker;
+    private final TimerWheel timerWheel;
+    private final MeterRegistry meterRegistry;
+    private final List<String> urls;
+    private final AtomicReference<Snapshot> snapshot;
+    private Disposable probing;
+
+    public HealthMonitor(PythonApiConfig apiConfig, BackendClients backendClients,
+                         IndexVersionTracker indexVersionTracker, CircuitBreaker circuitBreaker,
+                         TimerWheel timerWheel, MeterRegistry meterRegistry) {
+        this.apiConfig = apiConfig;
+        this.backendClients = backendClients;
+        this.indexVersionTracker = indexVersionTracker;
+        this.circuitBreaker = circuitBreaker;
+        this.timerWheel = timerWheel;
+        this.meterRegistry = meterRegistry;
+        this.urls = apiConfig.backendUrls();
+
+        // До первой проверки реплики считаются доступными
+        Map<String, BackendStatus> initial = new LinkedHashMap<>();
+        urls.forEach(url -> initial.put(url, BackendStatus.UNKNOWN));
+        this.snapshot = new AtomicReference<>(new Snapshot(Collections.unmodifiableMap(initial)));
+    }
+
+    @PostConstruct
+    public void start() {
+        for (String url : urls) {
+            Gauge.builder("python.api.backend.healthy", this, m -> m.snapshot().isHealthy(url) ? 1 : 0)
+                    .tag("backend", url)
+                    .register(meterRegistry);
+            Gauge.builder("python.api.backend.probe.latency", this, m -> m.latencyMillis(url))
+                    .tag("backend", url)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+
+        probing = Flux.interval(Duration.ZERO, apiConfig.getHealthCheckInterval(), timerWheel.scheduler())
+                .onBackpressureDrop()
+                .concatMap(tick -> probeAll())
+                .subscribe(healthy -> {
+                    if (healthy) {
+                        circuitBreaker.onHealthCheckPassed();
+                    }
+                });
+    }
+
+    public Snapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Запрос к реплике не дошёл до неё: реплика исключается из балансировки до следующей
+     * успешной проверки.
+     */
+    public void reportFailure(String url, Throwable error) {
+        BackendStatus previous = snapshot().backends().get(url);
+        update(url, new BackendStatus(false, previous != null ? previous.latency() : null,
+                error.getMessage(), Instant.now()));
+    }
+
+    private Mono<Boolean> probeAll() {
+        return Flux.fromIterable(urls)
+                .flatMap(this::probe)
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    private Mono<Boolean> probe(String url) {
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            return backendClients.execute(url, client -> client.get()
+                            .uri("/health")
+                            .retrieve()
+                            .bodyToMono(JsonNode.class))
+                    .timeout(apiConfig.getHealthCheckTimeout(), timerWheel.scheduler())
+                    .map(response -> {
+                        log.debug("Health check {} успешен: {}", url, response);
+                        indexVersionTracker.update(url, response.path("index_version").asText(null));
+                        update(url, new BackendStatus(true, Duration.ofNanos(System.nanoTime() - startedAt),
+                                null, Instant.now()));
+                        return true;
+                    })
+                    .onErrorResume(e -> {
+                        log.debug("Health check {} не удался: {}", url, e.getMessage());
+                        indexVersionTracker.forget(url);
+                        update(url, new BackendStatus(false, Duration.ofNanos(System.nanoTime() - startedAt),
+                                e.getMessage(), Instant.now()));
+                        return Mono.just(false);
+                    });
+        });
+    }
+
+    private void update(String url, BackendStatus status) {
+        Snapshot previous = snapshot.getAndUpdate(current -> current.with(url, status));
+        boolean wasHealthy = previous.isHealthy(url);
+        if (wasHealthy && !status.healthy()) {
+            log.warn("Реплика Python API исключена из балансировки: {} ({})", url, status.lastError());
+        } else if (!wasHealthy && status.healthy()) {
+            log.info("Реплика Python API снова доступна: {}", url);
+        }
+    }
+
+    private double latencyMillis(String url) {
+        BackendStatus status = snapshot().backends().get(url);
+        return status != null && status.latency() != null ? status.latency().toNanos() / 1_000_000.0 : Double.NaN;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (probing != null) {
+            probing.dispose();
+        }
+    }
+
+    /**
+     * Состояние реплики по последней проверке или последнему запросу.
+     */
+    public record BackendStatus(boolean healthy, Duration latency, String lastError, Instant checkedAt) {
+        static final BackendStatus UNKNOWN = new BackendStatus(true, null, null, null);
+    }
+
+    /**
+     * Неизменяемый снимок состояния всех реплик.
+     */
+    public record Snapshot(Map<String, BackendStatus> backends) {
+
+        public boolean isHealthy(String url) {
+            BackendStatus status = backends.get(url);
+            return status == null || status.healthy();
+        }
+
+        public boolean anyHealthy() {
+            return backends.values().stream().anyMatch(BackendStatus::healthy);
+        }
+
+        Snapshot with(String url, BackendStatus status) {
+            Map<String, BackendStatus> updated = new LinkedHashMap<>(backends);
+            updated.put(url, status);
+            return new Snapshot(Collections.unmodifiableMap(updated));
+        }
+    }
+}
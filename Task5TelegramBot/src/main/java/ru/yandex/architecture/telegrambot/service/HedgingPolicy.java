@@ -0,0 +1,113 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+import ru.yandex.architecture.telegrambot.config.HedgingConfig;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Параметры дублирующих (hedged) запросов к Python API.
+ * Задержка перед дублем равна заданному перцентилю недавних задержек, а бюджет ограничивает
+ * долю дублей: каждый основной запрос добавляет budgetPercent/100 токена, дубль тратит один.
+ */
+@Service
+public class HedgingPolicy {
+
+    private static final int RESERVOIR_SIZE = 512;
+    private static final int RECOMPUTE_EVERY = 64;
+    private static final long TOKEN = 1000;
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    private final HedgingConfig config;
+    private final MeterRegistry meterRegistry;
+    private final long[] reservoir = new long[RESERVOIR_SIZE];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong tokens = new AtomicLong();
+    private final long tokensPerRequest;
+    // long, чтобы индекс в резервуаре не стал отрицательным после 2^31 замеров
+    private long samples;
+    private volatile long delayNanos;
+
+    private final Counter requestCounter;
+    private final Counter hedgeCounter;
+    private final Counter hedgeWinCounter;
+
+    public HedgingPolicy(HedgingConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.tokensPerRequest = Math.round(TOKEN * config.getBudgetPercent() / 100);
+        this.delayNanos = config.getMinDelay().toNanos();
+        this.requestCounter = Counter.builder("python.api.hedging.requests")
+                .register(meterRegistry);
+        this.hedgeCounter = Counter.builder("python.api.hedging.hedges")
+                .register(meterRegistry);
+        this.hedgeWinCounter = Counter.builder("python.api.hedging.wins")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("python.api.hedging.delay", this, p -> p.delayNanos / 1_000_000.0)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public Duration hedgeDelay() {
+        return Duration.ofNanos(delayNanos);
+    }
+
+    /**
+     * Учитывает основной запрос и пополняет бюджет дублей.
+     */
+    public void onRequest() {
+        requestCounter.increment();
+        tokens.accumulateAndGet(tokensPerRequest, (current, add) -> Math.min(MAX_TOKENS, current + add));
+    }
+
+    /**
+     * Пытается взять из бюджета разрешение на дубль.
+     */
+    public boolean tryAcquireHedge() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        hedgeCounter.increment();
+        return true;
+    }
+
+    public void onHedgeWin() {
+        hedgeWinCounter.increment();
+    }
+
+    public void recordLatency(long nanos) {
+        lock.lock();
+        try {
+            reservoir[(int) (samples % RESERVOIR_SIZE)] = nanos;
+            samples++;
+            if (samples % RECOMPUTE_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(reservoir, (int) Math.min(samples, RESERVOIR_SIZE));
+                Arrays.sort(sorted);
+                int index = (int) Math.min(sorted.length - 1, Math.floor(config.getPercentile() * sorted.length));
+                long percentile = sorted[index];
+                delayNanos = Math.max(config.getMinDelay().toNanos(), percentile);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
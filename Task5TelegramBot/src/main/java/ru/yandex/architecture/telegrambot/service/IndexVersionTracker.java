@@ -0,0 +1,170 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отслеживает версию векторного индекса Python-сервиса.
+ * Версия приходит из ответа /health каждой реплики или из локального манифеста индекса
+ * (python.api.index-manifest), за которым следит WatchService. Во время поэтапной
+ * переиндексации реплики сообщают разные версии, поэтому текущая версия меняется, только
+ * когда все источники сходятся: иначе кэш ответов сбрасывался бы при каждой проверке.
+ */
+@Slf4j
+@Service
+public class IndexVersionTracker {
+
+    private static final String MANIFEST_SOURCE = "manifest";
+
+    private final ObjectMapper objectMapper;
+    private final String manifest;
+    private final AtomicReference<String> version = new AtomicReference<>();
+    // Последняя версия от каждого источника: адрес реплики или манифест
+    private final Map<String, String> reported = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private WatchService watchService;
+
+    public IndexVersionTracker(PythonApiConfig apiConfig, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.manifest = apiConfig.getIndexManifest();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (manifest != null && !manifest.isBlank()) {
+            watchService = watchManifest(Path.of(manifest));
+        }
+    }
+
+    /**
+     * Текущая версия индекса или null, если она ещё неизвестна.
+     */
+    public String currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * Версия индекса, о которой сообщил источник (реплика по адресу или манифест).
+     */
+    public void update(String source, String newVersion) {
+        if (newVersion == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!newVersion.equals(reported.put(source, newVersion))) {
+                advance();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Источник больше не сообщает версию, например реплика недоступна: её прежняя версия
+     * не должна задерживать смену версии на остальных.
+     */
+    public void forget(String source) {
+        lock.lock();
+        try {
+            if (reported.remove(source) != null) {
+                advance();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void advance() {
+        Set<String> versions = new HashSet<>(reported.values());
+        if (versions.size() != 1) {
+            if (versions.size() > 1) {
+                log.info("Реплики сообщают разные версии индекса {}, остаётся версия {}", versions, version.get());
+            }
+            return;
+        }
+        String agreed = versions.iterator().next();
+        String previous = version.getAndSet(agreed);
+        if (!Objects.equals(previous, agreed)) {
+            log.info("Версия индекса изменилась: {} -> {}", previous, agreed);
+        }
+    }
+
+    private WatchService watchManifest(Path manifest) {
+        Path file = manifest.toAbsolutePath();
+        readManifest(file);
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            file.getParent().register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Thread watcher = new Thread(() -> watchLoop(service, file), "index-manifest-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+            log.info("Отслеживается манифест индекса: {}", file);
+            return service;
+        } catch (IOException e) {
+            log.warn("Не удалось отслеживать манифест индекса {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void watchLoop(WatchService service, Path file) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        readManifest(file);
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("Каталог манифеста индекса больше недоступен: {}", file.getParent());
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readManifest(Path file) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            JsonNode manifest = objectMapper.readTree(file.toFile());
+            update(MANIFEST_SOURCE, manifest.path("version").asText(null));
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать манифест индекса {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
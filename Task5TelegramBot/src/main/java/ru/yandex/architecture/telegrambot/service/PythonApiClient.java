@@ -2,67 +2,327 @@ package ru.yandex.architecture.telegrambot.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+import ru.yandex.architecture.telegrambot.dto.Deadline;
+import ru.yandex.architecture.telegrambot.dto.QueryBatchRequest;
+import ru.yandex.architecture.telegrambot.dto.QueryBatchResponse;
+import ru.yandex.architecture.telegrambot.dto.QueryKey;
 import ru.yandex.architecture.telegrambot.dto.QueryRequest;
 import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+import ru.yandex.architecture.telegrambot.dto.QueryStreamChunk;
+import ru.yandex.architecture.telegrambot.service.cache.AnswerCache;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PythonApiClient {
 
+    private static final ParameterizedTypeReference<ServerSentEvent<QueryStreamChunk>> STREAM_EVENT_TYPE =
+            new ParameterizedTypeReference<>() {
+            };
+    // Таймаут вызова срабатывает чуть раньше общего срока, чтобы ограничитель увидел таймаут Python API
+    private static final Duration ATTEMPT_TIMEOUT_MARGIN = Duration.ofMillis(20);
+
     private final PythonApiConfig apiConfig;
-    private final WebClient webClient;
-
-    public QueryResponse query(String userQuery) {
-        try {
-            log.info("Отправка запроса в Python API: {}", userQuery);
-            
-            QueryRequest request = new QueryRequest(userQuery, 3);
-            
-            QueryResponse response = webClient.post()
-                    .uri(apiConfig.getUrl() + "/query")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(QueryResponse.class)
-                    .timeout(Duration.ofMillis(apiConfig.getTimeout()))
-                    .block();
-            
-            log.info("Получен ответ от Python API. Чанков: {}", 
-                    response != null ? response.getChunksCount() : 0);
-            
-            return response;
-        } catch (WebClientResponseException e) {
-            log.error("Ошибка при вызове Python API: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Ошибка при обращении к Python API: " + e.getMessage(), e);
-        } catch (Exception e) {
-            log.error("Неожиданная ошибка при вызове Python API", e);
-            throw new RuntimeException("Ошибка при обращении к Python API: " + e.getMessage(), e);
+    private final BackendClients backendClients;
+    private final QueryCoalescer queryCoalescer;
+    private final AnswerCache answerCache;
+    private final BackendPool backendPool;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final HedgingPolicy hedgingPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final HealthMonitor healthMonitor;
+    private final QueryBatcher queryBatcher;
+    private final TimerWheel timerWheel;
+
+    /**
+     * Срок обработки запроса, отсчитываемый от текущего момента.
+     */
+    public Deadline newDeadline() {
+        return Deadline.after(Duration.ofMillis(apiConfig.getTimeout()));
+    }
+
+    public QueryResponse query(String userQuery, Deadline deadline) {
+        return queryAsync(userQuery, deadline).block();
+    }
+
+    public Mono<QueryResponse> queryAsync(String userQuery, Deadline deadline) {
+        QueryRequest request = newRequest(userQuery);
+        QueryKey key = QueryKey.of(request);
+        // Популярные вопросы отдаются из кэша, а одинаковые запросы, пришедшие одновременно,
+        // выполняются одним вызовом со сроком того запроса, который пришёл первым
+        return answerCache.get(key, () -> queryCoalescer.execute(key, () -> send(request, deadline)));
+    }
+
+    /**
+     * Ответ по мере генерации: каждый элемент содержит весь полученный к этому моменту текст,
+     * последний - полный ответ и число чанков. Ответ из кэша приходит одним элементом.
+     */
+    public Flux<QueryResponse> queryStream(String userQuery, Deadline deadline) {
+        QueryRequest request = newRequest(userQuery);
+        return answerCache.getStream(QueryKey.of(request), () -> stream(request, deadline));
+    }
+
+    private QueryRequest newRequest(String userQuery) {
+        PythonApiConfig.Projection projection = apiConfig.getProjection();
+        return new QueryRequest(userQuery, 3, projection.isIncludeChunks(), projection.isIncludeReasoning());
+    }
+
+    private Flux<QueryResponse> stream(QueryRequest request, Deadline deadline) {
+        // Поток занимает соединение на всё время генерации, поэтому не проходит через ограничитель
+        // и выключатель, рассчитанные на короткие вызовы; общий срок ограничивает его длительность
+        return Flux.defer(() -> {
+                    if (deadline.isExpired()) {
+                        return Flux.<QueryResponse>error(
+                                new TimeoutException("Срок обработки запроса истёк до обращения к Python API"));
+                    }
+                    BackendPool.Backend backend = backendPool.select();
+                    log.info("Потоковый запрос в Python API {}: {}", backend.getUrl(), request.getQuery());
+                    backend.acquire();
+                    StringBuilder answer = new StringBuilder();
+                    boolean[] done = {false};
+                    return backendClients.executeMany(backend.getUrl(), client -> client.post()
+                                    .uri("/query_stream")
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .accept(MediaType.TEXT_EVENT_STREAM)
+                                    .header(Deadline.HEADER, Long.toString(deadline.epochMillis()))
+                                    .bodyValue(request)
+                                    .retrieve()
+                                    .bodyToFlux(STREAM_EVENT_TYPE))
+                            .takeUntilOther(Mono.delay(deadline.remaining(), timerWheel.scheduler()))
+                            .<QueryResponse>handle((event, sink) -> {
+                                QueryStreamChunk data = event.data();
+                                if ("error".equals(event.event())) {
+                                    sink.error(new IllegalStateException(
+                                            data != null ? data.getDetail() : "Python API прервал поток ответа"));
+                                    return;
+                                }
+                                if (data == null) {
+                                    return;
+                                }
+                                if (data.getDelta() != null) {
+                                    answer.append(data.getDelta());
+                                }
+                                QueryResponse partial = new QueryResponse();
+                                partial.setAnswer(answer.toString());
+                                if ("done".equals(event.event())) {
+                                    done[0] = true;
+                                    partial.setChunksCount(data.getChunksCount());
+                                    sink.next(partial);
+                                    sink.complete();
+                                    return;
+                                }
+                                sink.next(partial);
+                            })
+                            // Поток, оборванный сроком или сервером до события done, - это ошибка
+                            .concatWith(Mono.defer(() -> done[0] ? Mono.empty() : Mono.error(deadline.isExpired()
+                                    ? new TimeoutException("Python API не завершил ответ в срок")
+                                    : new IllegalStateException("Поток ответа оборвался до завершения"))))
+                            .doOnError(WebClientRequestException.class,
+                                    e -> healthMonitor.reportFailure(backend.getUrl(), e))
+                            .doFinally(signal -> backend.release());
+                })
+                .doOnComplete(() -> log.info("Потоковый ответ от Python API получен"))
+                .onErrorMap(this::mapError);
+    }
+
+    private Mono<QueryResponse> send(QueryRequest request, Deadline deadline) {
+        // Таймаут - остаток срока запроса, он учитывает и ожидание в очередях бота.
+        // При разомкнутом выключателе запрос завершается сразу, не занимая ограничитель и реплики
+        return Mono.defer(() -> {
+                    if (deadline.isExpired()) {
+                        // Срок истёк в очереди бота: это не сбой Python API, выключатель не учитывает
+                        return Mono.<QueryResponse>error(
+                                new TimeoutException("Срок обработки запроса истёк до обращения к Python API"));
+                    }
+                    // Под нагрузкой запрос может уйти в Python API в составе пакета
+                    return circuitBreaker.execute(() -> queryBatcher.execute(request, deadline,
+                                            () -> hedged(request, deadline), this::sendBatch)
+                                    .timeout(deadline.remaining(), timerWheel.scheduler()),
+                            PythonApiClient::isBackendFailure);
+                })
+                .doOnNext(response -> log.info("Получен ответ от Python API. Чанков: {}", response.getChunksCount()))
+                .onErrorMap(this::mapError);
+    }
+
+    private Mono<QueryResponse> hedged(QueryRequest request, Deadline deadline) {
+        return Mono.defer(() -> {
+            BackendPool.Backend primary = backendPool.select();
+            // С одной репликой дублировать запрос некуда
+            if (!hedgingPolicy.isEnabled() || backendPool.getBackends().size() < 2) {
+                return attempt(request, deadline, primary);
+            }
+
+            hedgingPolicy.onRequest();
+            // Если ответ задерживается дольше обычного, тот же запрос уходит на другую реплику.
+            // Побеждает первый ответ, проигравший запрос отменяется
+            Mono<HedgedResponse> primaryAttempt = attempt(request, deadline, primary)
+                    .map(response -> new HedgedResponse(response, false));
+            Mono<HedgedResponse> hedgeAttempt = Mono.delay(hedgingPolicy.hedgeDelay(), timerWheel.scheduler())
+                    .filter(tick -> hedgingPolicy.tryAcquireHedge())
+                    .flatMap(tick -> attempt(request, deadline, backendPool.selectOther(primary)))
+                    .map(response -> new HedgedResponse(response, true));
+            return Mono.firstWithValue(primaryAttempt, hedgeAttempt)
+                    .map(result -> {
+                        if (result.hedge()) {
+                            hedgingPolicy.onHedgeWin();
+                        }
+                        return result.response();
+                    });
+        });
+    }
+
+    private Mono<QueryResponse> attempt(QueryRequest request, Deadline deadline, BackendPool.Backend backend) {
+        // Внутренний таймаут относится только к самому вызову и сигнализирует ограничителю о перегрузке
+        return concurrencyLimiter.execute(() -> exchange(request, deadline, backend)
+                .timeout(attemptTimeout(deadline), backendTimeout(), timerWheel.scheduler()));
+    }
+
+    /**
+     * Таймаут вызова, начатого сейчас: остаток срока за вычетом небольшого запаса.
+     */
+    private static Duration attemptTimeout(Deadline deadline) {
+        Duration timeout = deadline.remaining().minus(ATTEMPT_TIMEOUT_MARGIN);
+        return timeout.compareTo(Duration.ofMillis(1)) > 0 ? timeout : Duration.ofMillis(1);
+    }
+
+    private static <T> Mono<T> backendTimeout() {
+        return Mono.error(() -> new BackendTimeoutException("Python API не ответил в срок вызова"));
+    }
+
+    /**
+     * Ошибки, которые учитывает выключатель: ответы 5xx, ошибки соединения и таймаут самого вызова.
+     * Ответы 4xx, 504 и 499 Python API (истёк срок или запрос отменён клиентом), истечение срока
+     * в очередях бота и отказ ограничителя говорят не о неисправности Python API.
+     */
+    static boolean isBackendFailure(Throwable e) {
+        if (e instanceof NoSuchElementException && e.getSuppressed().length > 0) {
+            e = e.getSuppressed()[0];
+        }
+        if (e instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError()
+                    && responseException.getStatusCode().value() != HttpStatus.GATEWAY_TIMEOUT.value();
         }
+        return e instanceof WebClientRequestException || e instanceof BackendTimeoutException;
+    }
+
+    private Mono<QueryResponse> exchange(QueryRequest request, Deadline deadline, BackendPool.Backend backend) {
+        return Mono.defer(() -> {
+            log.info("Отправка запроса в Python API {}: {}", backend.getUrl(), request.getQuery());
+
+            long startedAt = System.nanoTime();
+            return post("/query", request, QueryResponse.class, deadline, backend)
+                    .doOnNext(response -> hedgingPolicy.recordLatency(System.nanoTime() - startedAt));
+        });
+    }
+
+    private Mono<List<QueryResponse>> sendBatch(List<QueryRequest> requests, Deadline deadline) {
+        // Пакет занимает в ограничителе одно место, как и одиночный запрос
+        return Mono.defer(() -> {
+            BackendPool.Backend backend = backendPool.select();
+            return concurrencyLimiter.execute(() -> exchangeBatch(requests, deadline, backend)
+                    .timeout(attemptTimeout(deadline), backendTimeout(), timerWheel.scheduler()));
+        });
     }
 
+    private Mono<List<QueryResponse>> exchangeBatch(List<QueryRequest> requests, Deadline deadline,
+                                                    BackendPool.Backend backend) {
+        return Mono.defer(() -> {
+            log.info("Отправка пакета из {} запросов в Python API {}", requests.size(), backend.getUrl());
+            return post("/query_batch", new QueryBatchRequest(requests), QueryBatchResponse.class, deadline, backend)
+                    .map(QueryBatchResponse::getResults);
+        });
+    }
+
+    private <R> Mono<R> post(String path, Object body, Class<R> responseType, Deadline deadline,
+                             BackendPool.Backend backend) {
+        return Mono.defer(() -> {
+            PythonApiConfig.WireFormat wireFormat = backend.getWireFormat();
+            MediaType mediaType = wireFormat == PythonApiConfig.WireFormat.CBOR
+                    ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON;
+            backend.acquire();
+            return backendClients.execute(backend.getUrl(), client -> client.post()
+                            .uri(path)
+                            .contentType(mediaType)
+                            // Реплика без поддержки CBOR ответит в JSON
+                            .accept(mediaType, MediaType.APPLICATION_JSON)
+                            .header(Deadline.HEADER, Long.toString(deadline.epochMillis()))
+                            .bodyValue(body)
+                            .retrieve()
+                            .bodyToMono(responseType))
+                    .doOnError(WebClientRequestException.class, e -> healthMonitor.reportFailure(backend.getUrl(), e))
+                    .doFinally(signal -> backend.release())
+                    .onErrorResume(WebClientResponseException.UnsupportedMediaType.class, e -> {
+                        if (wireFormat == PythonApiConfig.WireFormat.JSON) {
+                            return Mono.error(e);
+                        }
+                        backend.fallbackToJson();
+                        return post(path, body, responseType, deadline, backend);
+                    });
+        });
+    }
+
+    /**
+     * Состояние Python API по данным выключателя и снимку фоновой проверки, без обращения к сети.
+     */
     public boolean healthCheck() {
-        try {
-            String response = webClient.get()
-                    .uri(apiConfig.getUrl() + "/health")
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofMillis(5000))
-                    .block();
-            
-            log.info("Health check успешен: {}", response);
-            return true;
-        } catch (Exception e) {
-            log.warn("Health check не удался: {}", e.getMessage());
-            return false;
+        boolean anyHealthy = healthMonitor.snapshot().anyHealthy();
+        boolean healthy = anyHealthy && circuitBreaker.getState() != CircuitBreaker.State.OPEN;
+        if (!healthy) {
+            log.warn("Health check не удался: выключатель {}, доступные реплики: {}",
+                    circuitBreaker.getState(), anyHealthy);
         }
+        return healthy;
     }
-}
 
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private Throwable mapError(Throwable e) {
+        if (e instanceof NoSuchElementException && e.getSuppressed().length > 0) {
+            // Mono.firstWithValue: не удались и основной запрос, и дубль - важна ошибка основного
+            e = e.getSuppressed()[0];
+        }
+        if (e instanceof ConcurrencyLimiter.LimitExceededException
+                || e instanceof CircuitBreaker.CallNotPermittedException) {
+            log.warn(e.getMessage());
+        } else if (e instanceof TimeoutException) {
+            log.warn("Python API не ответил в срок: {}", e.getMessage());
+        } else if (e instanceof WebClientResponseException responseException) {
+            log.error("Ошибка при вызове Python API: {} - {}",
+                    responseException.getStatusCode(), responseException.getResponseBodyAsString());
+        } else {
+            log.error("Неожиданная ошибка при вызове Python API", e);
+        }
+        return new RuntimeException("Ошибка при обращении к Python API: " + e.getMessage(), e);
+    }
+
+    /**
+     * Python API не ответил за время вызова, хотя запрос до него дошёл.
+     */
+    static final class BackendTimeoutException extends TimeoutException {
+        private static final long serialVersionUID = 1L;
+
+        BackendTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    private record HedgedResponse(QueryResponse response, boolean hedge) {
+    }
+}
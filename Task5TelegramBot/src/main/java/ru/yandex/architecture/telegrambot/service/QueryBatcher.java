@@ -0,0 +1,211 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.yandex.architecture.telegrambot.config.BatchingConfig;
+import ru.yandex.architecture.telegrambot.dto.Deadline;
+import ru.yandex.architecture.telegrambot.dto.QueryRequest;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Собирает запросы к Python API в пакеты.
+ * <p>
+ * Пока одновременных запросов меньше minInFlight, каждый запрос отправляется сразу.
+ * Под нагрузкой запросы, пришедшие в течение window, объединяются в один вызов /query_batch
+ * (не больше maxBatchSize), а ответы раздаются исходным вызывающим. Вызов отменяется,
+ * когда его ответа больше не ждёт ни один запрос.
+ */
+@Slf4j
+@Service
+public class QueryBatcher {
+
+    private final BatchingConfig config;
+    private final TimerWheel timerWheel;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final DistributionSummary batchSizeSummary;
+    private List<Item> pending = new ArrayList<>();
+    private Disposable windowTimer;
+
+    public QueryBatcher(BatchingConfig config, TimerWheel timerWheel, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.timerWheel = timerWheel;
+        this.batchSizeSummary = DistributionSummary.builder("python.api.batching.size")
+                .register(meterRegistry);
+        Gauge.builder("python.api.batching.in.flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет запрос отдельно или в составе пакета.
+     *
+     * @param single вызов для одного запроса
+     * @param batch  вызов для пакета; ответы должны идти в порядке запросов
+     */
+    public Mono<QueryResponse> execute(QueryRequest request, Deadline deadline, Supplier<Mono<QueryResponse>> single,
+                                       BiFunction<List<QueryRequest>, Deadline, Mono<List<QueryResponse>>> batch) {
+        if (!config.isEnabled()) {
+            return Mono.defer(single);
+        }
+        return Mono.defer(() -> {
+                    if (inFlight.incrementAndGet() < config.getMinInFlight()) {
+                        return single.get();
+                    }
+                    Item item = new Item(request, deadline, single, batch);
+                    enqueue(item);
+                    return item.sink.asMono()
+                            .doOnCancel(() -> {
+                                item.cancelled = true;
+                                item.leave();
+                            });
+                })
+                .doFinally(signal -> inFlight.decrementAndGet());
+    }
+
+    private void enqueue(Item item) {
+        List<Item> ready = null;
+        lock.lock();
+        try {
+            pending.add(item);
+            if (pending.size() >= config.getMaxBatchSize()) {
+                ready = takePending();
+            } else if (pending.size() == 1) {
+                windowTimer = timerWheel.schedule(config.getWindow(), this::flushWindow);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (ready != null) {
+            flush(ready);
+        }
+    }
+
+    private void flushWindow() {
+        List<Item> ready;
+        lock.lock();
+        try {
+            ready = takePending();
+        } finally {
+            lock.unlock();
+        }
+        flush(ready);
+    }
+
+    private List<Item> takePending() {
+        List<Item> ready = pending;
+        pending = new ArrayList<>();
+        if (windowTimer != null) {
+            windowTimer.dispose();
+            windowTimer = null;
+        }
+        return ready;
+    }
+
+    private void flush(List<Item> ready) {
+        // Запросы, которые уже не ждут, в пакет не попадают
+        List<Item> items = ready.stream().filter(item -> !item.cancelled).toList();
+        if (items.isEmpty()) {
+            return;
+        }
+        batchSizeSummary.record(items.size());
+        Call call = new Call(items.size());
+        items.forEach(item -> item.call = call);
+        // Запрос мог отказаться от ответа, пока собирался вызов
+        items.stream().filter(item -> item.cancelled).forEach(Item::leave);
+        if (items.size() == 1) {
+            Item item = items.get(0);
+            call.attach(item.single.get().subscribe(item.sink::tryEmitValue, item.sink::tryEmitError));
+            return;
+        }
+
+        // Python API работает над пакетом, пока ответа ждёт хотя бы один запрос
+        Deadline deadline = items.stream().map(item -> item.deadline)
+                .max(Comparator.comparingLong(Deadline::nanoTime))
+                .orElseThrow();
+        List<QueryRequest> requests = items.stream().map(item -> item.request).toList();
+        call.attach(items.get(0).batch.apply(requests, deadline).subscribe(
+                responses -> {
+                    if (responses.size() != items.size()) {
+                        IllegalStateException error = new IllegalStateException(
+                                "Python API вернул " + responses.size() + " ответов на пакет из " + items.size());
+                        items.forEach(item -> item.sink.tryEmitError(error));
+                        return;
+                    }
+                    for (int i = 0; i < items.size(); i++) {
+                        items.get(i).sink.tryEmitValue(responses.get(i));
+                    }
+                },
+                error -> items.forEach(item -> item.sink.tryEmitError(error))));
+    }
+
+    /**
+     * Вызов Python API, общий для запросов пакета.
+     */
+    private static final class Call {
+        private final AtomicInteger waiting;
+        private volatile Disposable subscription;
+        private volatile boolean abandoned;
+
+        private Call(int waiting) {
+            this.waiting = new AtomicInteger(waiting);
+        }
+
+        private void attach(Disposable subscription) {
+            this.subscription = subscription;
+            if (abandoned) {
+                subscription.dispose();
+            }
+        }
+
+        private void waiterGone() {
+            if (waiting.decrementAndGet() == 0) {
+                abandoned = true;
+                Disposable current = subscription;
+                if (current != null) {
+                    current.dispose();
+                }
+            }
+        }
+    }
+
+    private static final class Item {
+        private final QueryRequest request;
+        private final Deadline deadline;
+        private final Supplier<Mono<QueryResponse>> single;
+        private final BiFunction<List<QueryRequest>, Deadline, Mono<List<QueryResponse>>> batch;
+        private final Sinks.One<QueryResponse> sink = Sinks.one();
+        private final AtomicBoolean left = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile Call call;
+
+        private Item(QueryRequest request, Deadline deadline, Supplier<Mono<QueryResponse>> single,
+                     BiFunction<List<QueryRequest>, Deadline, Mono<List<QueryResponse>>> batch) {
+            this.request = request;
+            this.deadline = deadline;
+            this.single = single;
+            this.batch = batch;
+        }
+
+        private void leave() {
+            Call current = call;
+            if (current != null && left.compareAndSet(false, true)) {
+                current.waiterGone();
+            }
+        }
+    }
+}
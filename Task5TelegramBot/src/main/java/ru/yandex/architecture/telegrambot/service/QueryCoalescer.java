@@ -0,0 +1,112 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.yandex.architecture.telegrambot.dto.QueryKey;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Объединяет одинаковые запросы, которые выполняются одновременно (single-flight):
+ * к Python API уходит один вызов, а все ожидающие получают один и тот же ответ.
+ * Вызов отменяется, когда от ответа отказались все ожидающие (например, вопрос заменён новым);
+ * следующий такой же запрос начинает новый вызов.
+ */
+@Service
+public class QueryCoalescer {
+
+    private final Map<QueryKey, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Counter hitCounter;
+    private final DistributionSummary waitersSummary;
+
+    public QueryCoalescer(MeterRegistry meterRegistry) {
+        this.hitCounter = Counter.builder("python.api.coalescing.hits")
+                .register(meterRegistry);
+        this.waitersSummary = DistributionSummary.builder("python.api.coalescing.waiters")
+                .register(meterRegistry);
+        Gauge.builder("python.api.coalescing.in.flight", inFlight, Map::size)
+                .register(meterRegistry);
+    }
+
+    public Mono<QueryResponse> execute(QueryKey key, Supplier<Mono<QueryResponse>> call) {
+        return Mono.defer(() -> {
+            boolean[] created = {false};
+            // Счётчики ожидающих меняются только внутри compute по ключу, поэтому последний
+            // ушедший ожидающий и новый участник не могут разминуться
+            Flight flight = inFlight.compute(key, (k, current) -> {
+                Flight target = current;
+                if (target == null) {
+                    created[0] = true;
+                    target = new Flight();
+                }
+                target.active++;
+                target.waiters++;
+                return target;
+            });
+            if (created[0]) {
+                start(key, flight, call);
+            } else {
+                hitCounter.increment();
+            }
+            return flight.response.asMono()
+                    .doOnCancel(() -> leave(key, flight));
+        });
+    }
+
+    private void start(QueryKey key, Flight flight, Supplier<Mono<QueryResponse>> call) {
+        flight.subscription = call.get().subscribe(
+                response -> {
+                    complete(key, flight);
+                    flight.response.tryEmitValue(response);
+                },
+                error -> {
+                    complete(key, flight);
+                    flight.response.tryEmitError(error);
+                },
+                () -> {
+                    complete(key, flight);
+                    flight.response.tryEmitEmpty();
+                });
+    }
+
+    private void complete(QueryKey key, Flight flight) {
+        inFlight.computeIfPresent(key, (k, current) -> {
+            if (current != flight) {
+                return current;
+            }
+            waitersSummary.record(current.waiters);
+            return null;
+        });
+    }
+
+    private void leave(QueryKey key, Flight flight) {
+        boolean[] abandoned = {false};
+        inFlight.computeIfPresent(key, (k, current) -> {
+            if (current != flight || --current.active > 0) {
+                return current;
+            }
+            abandoned[0] = true;
+            return null;
+        });
+        if (abandoned[0]) {
+            flight.subscription.dispose();
+        }
+    }
+
+    private static class Flight {
+        private final Sinks.One<QueryResponse> response = Sinks.one();
+        private volatile Disposable subscription;
+        // Изменяются только внутри compute по ключу
+        private int active;
+        private int waiters;
+    }
+}
@@ -0,0 +1,405 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.yandex.architecture.telegrambot.config.SendSchedulerConfig;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Планировщик исходящих сообщений Bot API.
+ * <p>
+ * Сообщения одного чата выстраиваются в очередь чата. Первое из них резервирует время в корзине
+ * чата (по умолчанию одно сообщение в секунду), следующее - только после того, как предыдущее
+ * отправлено, поэтому сообщения чата уходят по порядку и без лишних ожиданий для других чатов.
+ * Когда время наступает, сообщение попадает в одну из трёх очередей: ответы на команды -
+ * в приоритетную, промежуточные правки - в отбрасываемую, остальные - в обычную. Единственный
+ * поток отправки забирает сообщения из очередей по приоритету, пока есть токены общей корзины
+ * (около 30 сообщений в секунду). Действия чата (SendChatAction) не считаются его сообщениями
+ * и занимают только общую корзину. Корзины - алгоритм GCRA на одном AtomicLong без блокировок.
+ * <p>
+ * Ответ 429 сдвигает корзину чата на retry_after, и сообщение отправляется повторно, оставаясь
+ * первым в очереди чата: более поздние сообщения чата его не обгоняют. Сообщения отбрасываемой
+ * очереди не повторяются. Если 429 приходит подряд в разные чаты, ограничение относится ко всему
+ * боту, и на retry_after останавливается и общая корзина.
+ */
+@Slf4j
+@Service
+public class SendScheduler {
+
+    private final SendSchedulerConfig config;
+    private final MeterRegistry meterRegistry;
+    private final RateBucket globalBucket;
+    private final Cache<String, RateBucket> chatBuckets;
+    // Неотправленные сообщения чатов; первое в очереди - отправляемое сейчас
+    private final Map<String, Queue<Outbound<?>>> chatQueues = new ConcurrentHashMap<>();
+    private final TimerWheel timerWheel;
+    private final ExecutorService executor;
+    private final Queue<Outbound<?>> priorityLane = new ConcurrentLinkedQueue<>();
+    private final Queue<Outbound<?>> normalLane = new ConcurrentLinkedQueue<>();
+    private final Queue<Outbound<?>> droppableLane = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainPending = new AtomicBoolean();
+    private final AtomicInteger queued = new AtomicInteger();
+    // Последний ответ 429: по нему видно, что ограничение получили разные чаты
+    private final AtomicReference<RateLimit> lastRateLimit = new AtomicReference<>();
+
+    private final Timer priorityLatency;
+    private final Timer normalLatency;
+    private final Timer droppableLatency;
+    private final Counter rateLimitedCounter;
+    private final Counter globalPauseCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+
+    public SendScheduler(SendSchedulerConfig config, TimerWheel timerWheel, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.timerWheel = timerWheel;
+        this.globalBucket = new RateBucket(1_000_000_000L / Math.max(1, config.getGlobalMessagesPerSecond()),
+                config.getGlobalBurst());
+        // Корзина давно молчащего чата заведомо полна: её можно удалить и при необходимости создать заново
+        this.chatBuckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(5))
+                .build();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "telegram-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.priorityLatency = Timer.builder("telegram.sender.latency")
+                .tag("lane", "priority")
+                .register(meterRegistry);
+        this.normalLatency = Timer.builder("telegram.sender.latency")
+                .tag("lane", "normal")
+                .register(meterRegistry);
+        this.droppableLatency = Timer.builder("telegram.sender.latency")
+                .tag("lane", "droppable")
+                .register(meterRegistry);
+        this.rateLimitedCounter = Counter.builder("telegram.sender.rate.limited")
+                .register(meterRegistry);
+        this.globalPauseCounter = Counter.builder("telegram.sender.global.paused")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("telegram.sender.dropped")
+                .tag("reason", "failed")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("telegram.sender.dropped")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        Gauge.builder("telegram.sender.queue.size", queued, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("telegram.sender.ready", this,
+                        s -> s.priorityLane.size() + s.normalLane.size() + s.droppableLane.size())
+                .register(meterRegistry);
+    }
+
+    public enum Lane {
+        // Ответы на команды: обгоняют ответы на вопросы в общей очереди
+        PRIORITY,
+        NORMAL,
+        // Промежуточные правки и индикатор печати: уходят последними и после 429 не повторяются
+        DROPPABLE
+    }
+
+    /**
+     * Ставит отправку в очередь. Вызов send выполняется, когда это позволяют лимиты чата
+     * и общий лимит, и повторяется после ответа 429.
+     *
+     * @return результат отправки; при переполнении очереди - ошибка RejectedExecutionException
+     */
+    public <T> CompletableFuture<T> submit(String chatId, Lane lane, Supplier<CompletableFuture<T>> send) {
+        if (!config.isEnabled()) {
+            return send.get();
+        }
+        Outbound<T> outbound = new Outbound<>(chatId, lane, true, send);
+        if (!enqueue(outbound)) {
+            return outbound.result;
+        }
+        boolean[] first = {false};
+        chatQueues.compute(chatId, (id, queue) -> {
+            Queue<Outbound<?>> chatQueue = queue != null ? queue : new ArrayDeque<>();
+            chatQueue.add(outbound);
+            first[0] = chatQueue.size() == 1;
+            return chatQueue;
+        });
+        if (first[0]) {
+            schedule(outbound, chatBucket(chatId).reserve(System.nanoTime()));
+        }
+        return outbound.result;
+    }
+
+    /**
+     * Ставит в очередь действие чата (SendChatAction). Оно не считается сообщением чата, поэтому
+     * не ждёт очереди чата и занимает только токен общей корзины; после 429 не повторяется.
+     */
+    public <T> CompletableFuture<T> submitAction(String chatId, Supplier<CompletableFuture<T>> send) {
+        if (!config.isEnabled()) {
+            return send.get();
+        }
+        Outbound<T> outbound = new Outbound<>(chatId, Lane.DROPPABLE, false, send);
+        if (enqueue(outbound)) {
+            ready(outbound);
+        }
+        return outbound.result;
+    }
+
+    private boolean enqueue(Outbound<?> outbound) {
+        if (queued.incrementAndGet() > config.getMaxQueued()) {
+            queued.decrementAndGet();
+            rejectedCounter.increment();
+            outbound.result.completeExceptionally(
+                    new RejectedExecutionException("Очередь исходящих сообщений переполнена"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Пауза, которую Bot API просит выдержать после ответа 429, или null для других ошибок.
+     */
+    public static Duration retryAfter(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TelegramApiRequestException requestException
+                    && requestException.getErrorCode() != null && requestException.getErrorCode() == 429) {
+                Integer seconds = requestException.getParameters() != null
+                        ? requestException.getParameters().getRetryAfter() : null;
+                return Duration.ofSeconds(seconds != null ? seconds : 1);
+            }
+        }
+        return null;
+    }
+
+    private RateBucket chatBucket(String chatId) {
+        return chatBuckets.get(chatId,
+                id -> new RateBucket(config.getChatInterval().toNanos(), config.getChatBurst()));
+    }
+
+    private void schedule(Outbound<?> outbound, long delayNanos) {
+        if (delayNanos <= 0) {
+            ready(outbound);
+        } else {
+            timerWheel.schedule(Duration.ofNanos(delayNanos), () -> ready(outbound));
+        }
+    }
+
+    private void ready(Outbound<?> outbound) {
+        lane(outbound.lane).add(outbound);
+        if (drainPending.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Queue<Outbound<?>> lane = !priorityLane.isEmpty() ? priorityLane
+                    : !normalLane.isEmpty() ? normalLane : droppableLane;
+            if (lane.isEmpty()) {
+                drainPending.set(false);
+                // Сообщение могло появиться после проверки, но до сброса флага
+                boolean empty = priorityLane.isEmpty() && normalLane.isEmpty() && droppableLane.isEmpty();
+                if (!empty && drainPending.compareAndSet(false, true)) {
+                    continue;
+                }
+                return;
+            }
+            long wait = globalBucket.tryAcquire(System.nanoTime());
+            if (wait > 0) {
+                // Флаг остаётся поднятым: очередь разберёт отложенный запуск
+                timerWheel.schedule(Duration.ofNanos(wait), () -> executor.execute(this::drain));
+                return;
+            }
+            send(lane.poll());
+        }
+    }
+
+    private <T> void send(Outbound<T> outbound) {
+        outbound.attempts++;
+        CompletableFuture<T> call;
+        try {
+            call = outbound.send.get();
+        } catch (Exception e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((result, error) -> {
+            if (error == null) {
+                complete(outbound);
+                outbound.result.complete(result);
+                return;
+            }
+            Duration retryAfter = retryAfter(error);
+            if (retryAfter != null) {
+                rateLimitedCounter.increment();
+                long now = System.nanoTime();
+                RateBucket bucket = rateLimited(outbound.chatId, now, now + retryAfter.toNanos());
+                if (outbound.lane != Lane.DROPPABLE && outbound.attempts <= config.getMaxRetries()) {
+                    log.warn("Bot API ограничил отправку в чат {}, повтор через {} с",
+                            outbound.chatId, retryAfter.toSeconds());
+                    schedule(outbound, bucket.reserve(now));
+                    return;
+                }
+            }
+            failedCounter.increment();
+            complete(outbound);
+            outbound.result.completeExceptionally(error);
+        });
+    }
+
+    /**
+     * Останавливает корзину чата до until, а если незадолго до этого 429 получил другой чат -
+     * и общую корзину: значит, превышен общий лимит бота и остальные чаты получили бы 429 тоже.
+     */
+    private RateBucket rateLimited(String chatId, long now, long until) {
+        RateBucket bucket = chatBucket(chatId);
+        bucket.pauseUntil(until);
+        RateLimit previous = lastRateLimit.getAndSet(new RateLimit(chatId, until));
+        if (previous != null && previous.until() > now && !previous.chatId().equals(chatId)) {
+            globalPauseCounter.increment();
+            globalBucket.pauseUntil(until);
+            log.warn("Bot API ограничил отправку в несколько чатов, отправка приостановлена на {} мс",
+                    TimeUnit.NANOSECONDS.toMillis(until - now));
+        }
+        return bucket;
+    }
+
+    private Queue<Outbound<?>> lane(Lane lane) {
+        return switch (lane) {
+            case PRIORITY -> priorityLane;
+            case NORMAL -> normalLane;
+            case DROPPABLE -> droppableLane;
+        };
+    }
+
+    private void complete(Outbound<?> outbound) {
+        queued.decrementAndGet();
+        Timer latency = switch (outbound.lane) {
+            case PRIORITY -> priorityLatency;
+            case NORMAL -> normalLatency;
+            case DROPPABLE -> droppableLatency;
+        };
+        latency.record(System.nanoTime() - outbound.submittedAt, TimeUnit.NANOSECONDS);
+        if (!outbound.chatQueued) {
+            return;
+        }
+
+        // Следующее сообщение чата резервирует время только сейчас
+        Outbound<?>[] next = {null};
+        chatQueues.computeIfPresent(outbound.chatId, (id, queue) -> {
+            queue.poll();
+            next[0] = queue.peek();
+            return queue.isEmpty() ? null : queue;
+        });
+        if (next[0] != null) {
+            schedule(next[0], chatBucket(outbound.chatId).reserve(System.nanoTime()));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class Outbound<T> {
+        private final String chatId;
+        private final Lane lane;
+        // Стоит ли сообщение в очереди чата и занимает ли его корзину
+        private final boolean chatQueued;
+        private final Supplier<CompletableFuture<T>> send;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long submittedAt = System.nanoTime();
+        private int attempts;
+
+        private Outbound(String chatId, Lane lane, boolean chatQueued, Supplier<CompletableFuture<T>> send) {
+            this.chatId = chatId;
+            this.lane = lane;
+            this.chatQueued = chatQueued;
+            this.send = send;
+        }
+    }
+
+    private record RateLimit(String chatId, long until) {
+    }
+
+    /**
+     * Корзина токенов по алгоритму GCRA: состояние - теоретическое время следующего
+     * сообщения (TAT), допуск всплеска - (burst - 1) интервалов.
+     */
+    static final class RateBucket {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong tat;
+
+        RateBucket(long intervalNanos, int burst) {
+            this.intervalNanos = intervalNanos;
+            this.toleranceNanos = (Math.max(1, burst) - 1) * intervalNanos;
+            this.tat = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * Занимает ближайшее свободное время.
+         *
+         * @return сколько наносекунд ждать до занятого времени
+         */
+        long reserve(long now) {
+            while (true) {
+                long current = tat.get();
+                long at = Math.max(now, current - toleranceNanos);
+                if (tat.compareAndSet(current, Math.max(current, at) + intervalNanos)) {
+                    return at - now;
+                }
+            }
+        }
+
+        /**
+         * Берёт токен, если он есть.
+         *
+         * @return 0, если токен взят, иначе сколько наносекунд ждать следующего токена
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                long current = tat.get();
+                long allowedAt = current - toleranceNanos;
+                if (now < allowedAt) {
+                    return allowedAt - now;
+                }
+                if (tat.compareAndSet(current, Math.max(current, now) + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        void pauseUntil(long until) {
+            tat.accumulateAndGet(until, Math::max);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.yandex.architecture.telegrambot.config.TimerConfig;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Общий таймер бота на основе колеса (Netty {@link HashedWheelTimer}).
+ * Постановка и отмена таймаута стоят O(1) и не создают задач в очереди с приоритетом,
+ * поэтому десятки тысяч одновременных таймаутов (сроки запросов, повторы, интервалы правок)
+ * обслуживает один поток. Точность ограничена шагом колеса.
+ * <p>
+ * Поток колеса только переключает сработавшие задачи на Schedulers.parallel(), поэтому
+ * медленная задача не задерживает остальные таймауты. Для операторов Reactor со временем
+ * (timeout, delay, interval) используется {@link #scheduler()}.
+ */
+@Slf4j
+@Service
+public class TimerWheel {
+
+    private final HashedWheelTimer timer;
+    private final Scheduler callbacks = Schedulers.parallel();
+    private final Scheduler scheduler = new WheelScheduler();
+
+    public TimerWheel(TimerConfig config, MeterRegistry meterRegistry) {
+        this.timer = new HashedWheelTimer(runnable -> {
+            Thread thread = new Thread(runnable, "bot-timer");
+            thread.setDaemon(true);
+            return thread;
+        }, config.getTickDuration().toNanos(), TimeUnit.NANOSECONDS, config.getTicksPerWheel(), false);
+        this.timer.start();
+
+        Gauge.builder("telegram.timer.pending", timer, HashedWheelTimer::pendingTimeouts)
+                .register(meterRegistry);
+        log.info("Таймер запущен: шаг {} мс, ячеек {}", config.getTickDuration().toMillis(), config.getTicksPerWheel());
+    }
+
+    /**
+     * Выполняет задачу после задержки.
+     *
+     * @return задача, отмена которой снимает таймаут с колеса
+     */
+    public Disposable schedule(Duration delay, Runnable task) {
+        return scheduler.schedule(task, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Планировщик Reactor поверх колеса, например для timeout(duration, timerWheel.scheduler()).
+     */
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.stop();
+    }
+
+    private final class WheelScheduler implements Scheduler {
+
+        @Override
+        public Disposable schedule(Runnable task) {
+            return callbacks.schedule(task);
+        }
+
+        @Override
+        public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+            if (delay <= 0) {
+                return callbacks.schedule(task);
+            }
+            WheelTask wheelTask = new WheelTask(task, callbacks::schedule, 0, null);
+            wheelTask.arm(unit.toNanos(delay));
+            return wheelTask;
+        }
+
+        @Override
+        public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+            WheelTask wheelTask = new WheelTask(task, callbacks::schedule, unit.toNanos(period), null);
+            wheelTask.arm(unit.toNanos(initialDelay));
+            return wheelTask;
+        }
+
+        @Override
+        public Worker createWorker() {
+            return new WheelWorker();
+        }
+    }
+
+    /**
+     * Исполнитель Reactor: задачи выполняет последовательный исполнитель Schedulers.parallel(),
+     * а отложенные ждут на колесе.
+     */
+    private final class WheelWorker implements Scheduler.Worker {
+        private final Scheduler.Worker delegate = callbacks.createWorker();
+        private final Disposable.Composite tasks = Disposables.composite();
+
+        @Override
+        public Disposable schedule(Runnable task) {
+            return delegate.schedule(task);
+        }
+
+        @Override
+        public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+            if (delay <= 0) {
+                return delegate.schedule(task);
+            }
+            WheelTask wheelTask = new WheelTask(task, delegate::schedule, 0, tasks);
+            if (tasks.add(wheelTask)) {
+                wheelTask.arm(unit.toNanos(delay));
+            }
+            return wheelTask;
+        }
+
+        @Override
+        public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+            WheelTask wheelTask = new WheelTask(task, delegate::schedule, unit.toNanos(period), tasks);
+            if (tasks.add(wheelTask)) {
+                wheelTask.arm(unit.toNanos(initialDelay));
+            }
+            return wheelTask;
+        }
+
+        @Override
+        public void dispose() {
+            tasks.dispose();
+            delegate.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return tasks.isDisposed();
+        }
+    }
+
+    /**
+     * Таймаут на колесе; периодическая задача после выполнения ставится на колесо заново
+     * относительно запланированного, а не фактического времени запуска.
+     */
+    private final class WheelTask implements Disposable, TimerTask {
+        private final Runnable task;
+        private final Function<Runnable, Disposable> executor;
+        private final long periodNanos;
+        private final Disposable.Composite owner;
+        private long runAt;
+        private volatile Timeout timeout;
+        private volatile Disposable running;
+        private volatile boolean disposed;
+
+        private WheelTask(Runnable task, Function<Runnable, Disposable> executor, long periodNanos,
+                          Disposable.Composite owner) {
+            this.task = task;
+            this.executor = executor;
+            this.periodNanos = periodNanos;
+            this.owner = owner;
+        }
+
+        private void arm(long delayNanos) {
+            runAt = System.nanoTime() + delayNanos;
+            timeout = timer.newTimeout(this, delayNanos, TimeUnit.NANOSECONDS);
+            if (disposed) {
+                timeout.cancel();
+            }
+        }
+
+        @Override
+        public void run(Timeout expired) {
+            if (!disposed) {
+                running = executor.apply(this::fire);
+            }
+        }
+
+        private void fire() {
+            if (disposed) {
+                return;
+            }
+            try {
+                task.run();
+            } finally {
+                if (periodNanos > 0 && !disposed) {
+                    runAt += periodNanos;
+                    long delay = runAt - System.nanoTime();
+                    timeout = timer.newTimeout(this, Math.max(0, delay), TimeUnit.NANOSECONDS);
+                } else if (owner != null) {
+                    owner.remove(this);
+                }
+            }
+        }
+
+        @Override
+        public void dispose() {
+            if (disposed) {
+                return;
+            }
+            disposed = true;
+            Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+            Disposable executing = running;
+            if (executing != null) {
+                executing.dispose();
+            }
+            if (owner != null) {
+                owner.remove(this);
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+}
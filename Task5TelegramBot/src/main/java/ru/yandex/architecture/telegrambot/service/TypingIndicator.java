@@ -0,0 +1,166 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import ru.yandex.architecture.telegrambot.config.TypingConfig;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Индикатор «печатает...» на время обработки запроса.
+ * SendChatAction отправляется асинхронно и повторяется каждые refreshInterval, пока у чата
+ * есть незавершённые запросы. Несколько запросов одного чата разделяют один индикатор:
+ * он снимается, когда завершается последний из них, но не позже maxDuration.
+ */
+@Slf4j
+@Service
+public class TypingIndicator {
+
+    private final TypingConfig config;
+    private final TimerWheel timerWheel;
+    private final Map<Long, Keepalive> chats = new ConcurrentHashMap<>();
+
+    private final Counter actionCounter;
+
+    public TypingIndicator(TypingConfig config, TimerWheel timerWheel, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.timerWheel = timerWheel;
+        this.actionCounter = Counter.builder("telegram.typing.actions")
+                .register(meterRegistry);
+        Gauge.builder("telegram.typing.active", chats, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Показывает индикатор в чате до вызова {@link Handle#stop()}.
+     *
+     * @param sendAction отправка SendChatAction в этот чат
+     */
+    public Handle start(Long chatId, Supplier<CompletableFuture<?>> sendAction) {
+        if (!config.isEnabled()) {
+            return new Handle(null);
+        }
+        Keepalive[] created = {null};
+        Keepalive keepalive = chats.compute(chatId, (id, current) -> {
+            if (current != null) {
+                current.holders++;
+                return current;
+            }
+            created[0] = new Keepalive(id, sendAction);
+            return created[0];
+        });
+        if (created[0] != null) {
+            keepalive.begin();
+        }
+        return new Handle(keepalive);
+    }
+
+    private void release(Keepalive keepalive) {
+        boolean[] last = {false};
+        chats.computeIfPresent(keepalive.chatId, (id, current) -> {
+            if (current != keepalive) {
+                return current;
+            }
+            if (--current.holders > 0) {
+                return current;
+            }
+            last[0] = true;
+            return null;
+        });
+        if (last[0]) {
+            keepalive.end();
+        }
+    }
+
+    private void expire(Keepalive keepalive) {
+        if (chats.remove(keepalive.chatId, keepalive)) {
+            log.warn("Индикатор печати в чате {} снят по истечении {}", keepalive.chatId, config.getMaxDuration());
+            keepalive.end();
+        }
+    }
+
+    public final class Handle {
+        private final Keepalive keepalive;
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        private Handle(Keepalive keepalive) {
+            this.keepalive = keepalive;
+        }
+
+        /**
+         * Запрос завершён; повторный вызов ничего не делает.
+         */
+        public void stop() {
+            if (keepalive != null && stopped.compareAndSet(false, true)) {
+                release(keepalive);
+            }
+        }
+    }
+
+    private final class Keepalive {
+        private final Long chatId;
+        private final Supplier<CompletableFuture<?>> sendAction;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        // Изменяется только внутри compute по ключу чата
+        private int holders = 1;
+        private volatile Disposable refresh;
+        private volatile Disposable expiry;
+        private volatile boolean ended;
+
+        private Keepalive(Long chatId, Supplier<CompletableFuture<?>> sendAction) {
+            this.chatId = chatId;
+            this.sendAction = sendAction;
+        }
+
+        private void begin() {
+            long period = config.getRefreshInterval().toNanos();
+            refresh = timerWheel.scheduler().schedulePeriodically(this::send, 0, period, TimeUnit.NANOSECONDS);
+            expiry = timerWheel.schedule(config.getMaxDuration(), () -> expire(this));
+            // Запрос мог завершиться раньше, чем таймеры были поставлены
+            if (ended) {
+                end();
+            }
+        }
+
+        private void end() {
+            ended = true;
+            Disposable current = refresh;
+            if (current != null) {
+                current.dispose();
+            }
+            current = expiry;
+            if (current != null) {
+                current.dispose();
+            }
+        }
+
+        private void send() {
+            // Предыдущая отправка ещё не завершилась - новая не нужна
+            if (ended || !sending.compareAndSet(false, true)) {
+                return;
+            }
+            actionCounter.increment();
+            CompletableFuture<?> call;
+            try {
+                call = sendAction.get();
+            } catch (Exception e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            call.whenComplete((result, e) -> {
+                sending.set(false);
+                if (e != null) {
+                    log.warn("Не удалось отправить индикатор печати в чат {}: {}", chatId, e.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import ru.yandex.architecture.telegrambot.config.DispatcherConfig;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Распределяет обработку обновлений по последовательным очередям, выбираемым по chatId.
+ * Сообщения одного чата обрабатываются строго по порядку, разные чаты - параллельно.
+ * <p>
+ * В режиме PLATFORM чаты распределяются по фиксированному набору однопоточных исполнителей.
+ * В режиме VIRTUAL каждое обновление выполняется в собственном виртуальном потоке, а порядок
+ * внутри чата обеспечивается цепочкой задач этого чата.
+ * В режиме REACTIVE обновления проходят через единый поток Reactor: чаты группируются
+ * по chatId, группы обрабатываются параллельно с ограничением reactiveConcurrency,
+ * а задачи внутри группы - последовательно.
+ */
+@Slf4j
+@Service
+public class UpdateDispatcher {
+
+    private final DispatcherConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor[] stripes;
+    private final ExecutorService virtualExecutor;
+    private final Map<Long, ChatChain> chatChains = new ConcurrentHashMap<>();
+    private final AtomicInteger virtualPending = new AtomicInteger();
+    private final AtomicInteger virtualActive = new AtomicInteger();
+    private final Sinks.Many<ReactiveTask> reactiveSink;
+    private final int reactiveCapacity;
+    private final int reactiveGroups;
+    private Disposable reactivePipeline;
+    private final AtomicInteger reactivePending = new AtomicInteger();
+    private final AtomicInteger reactiveActive = new AtomicInteger();
+
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Timer taskTimer;
+
+    public UpdateDispatcher(DispatcherConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.taskTimer = Timer.builder("telegram.dispatcher.task.duration")
+                .tag("mode", config.getMode().name().toLowerCase())
+                .register(meterRegistry);
+
+        if (config.getMode() == DispatcherConfig.Mode.REACTIVE) {
+            int groups = Math.max(1, config.getReactiveConcurrency());
+            this.stripes = new ThreadPoolExecutor[0];
+            this.virtualExecutor = null;
+            this.reactiveCapacity = groups * config.getQueueCapacity();
+            this.reactiveGroups = groups;
+            this.reactiveSink = Sinks.many().unicast().onBackpressureBuffer();
+            log.info("Диспетчер обновлений запущен в реактивном режиме: параллельность {}, глубина очереди {}",
+                    groups, reactiveCapacity);
+        } else if (config.getMode() == DispatcherConfig.Mode.VIRTUAL) {
+            this.stripes = new ThreadPoolExecutor[0];
+            this.virtualExecutor = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("update-virtual-", 0).factory());
+            this.reactiveSink = null;
+            this.reactiveCapacity = 0;
+            this.reactiveGroups = 0;
+            log.info("Диспетчер обновлений запущен в режиме виртуальных потоков, глубина очереди чата {}",
+                    config.getQueueCapacity());
+        } else {
+            int workers = Math.max(1, config.getWorkers());
+            this.stripes = new ThreadPoolExecutor[workers];
+            for (int i = 0; i < workers; i++) {
+                String threadName = "update-worker-" + i;
+                stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(config.getQueueCapacity()),
+                        runnable -> new Thread(runnable, threadName));
+            }
+            this.virtualExecutor = null;
+            this.reactiveSink = null;
+            this.reactiveCapacity = 0;
+            this.reactiveGroups = 0;
+            log.info("Диспетчер обновлений запущен: потоков {}, глубина очереди {}",
+                    workers, config.getQueueCapacity());
+        }
+
+        this.acceptedCounter = Counter.builder("telegram.dispatcher.updates")
+                .tag("result", "accepted")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("telegram.dispatcher.updates")
+                .tag("result", "rejected")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (reactiveSink != null) {
+            // До подписки задачи копятся в буфере приёмника
+            reactivePipeline = reactiveSink.asFlux()
+                    .groupBy(task -> Math.floorMod(Long.hashCode(task.chatId()), reactiveGroups))
+                    .flatMap(group -> group.concatMap(this::runReactive), reactiveGroups)
+                    .subscribe();
+        }
+        Gauge.builder("telegram.dispatcher.queue.size", this, UpdateDispatcher::queueSize)
+                .register(meterRegistry);
+        Gauge.builder("telegram.dispatcher.active", this, UpdateDispatcher::activeCount)
+                .register(meterRegistry);
+    }
+
+    public boolean isReactive() {
+        return reactiveSink != null;
+    }
+
+    /**
+     * Ставит блокирующую задачу в очередь чата.
+     * В реактивном режиме задача выполняется на Schedulers.boundedElastic().
+     *
+     * @return false, если очередь переполнена и задача отклонена
+     */
+    public boolean dispatch(Long chatId, Runnable task) {
+        boolean accepted;
+        if (reactiveSink != null) {
+            accepted = dispatchReactive(chatId,
+                    () -> Mono.fromRunnable(task).subscribeOn(Schedulers.boundedElastic()).then());
+        } else if (virtualExecutor != null) {
+            accepted = dispatchVirtual(chatId, task);
+        } else {
+            accepted = dispatchPlatform(chatId, task);
+        }
+        (accepted ? acceptedCounter : rejectedCounter).increment();
+        return accepted;
+    }
+
+    /**
+     * Ставит неблокирующую задачу в очередь чата. Доступно только в режиме REACTIVE.
+     *
+     * @return false, если очередь переполнена и задача отклонена
+     */
+    public boolean dispatchAsync(Long chatId, Supplier<Mono<Void>> task) {
+        if (reactiveSink == null) {
+            throw new IllegalStateException("Диспетчер запущен не в реактивном режиме: " + config.getMode());
+        }
+        boolean accepted = dispatchReactive(chatId, task);
+        (accepted ? acceptedCounter : rejectedCounter).increment();
+        return accepted;
+    }
+
+    private boolean dispatchPlatform(Long chatId, Runnable task) {
+        try {
+            stripes[stripeIndex(chatId)].execute(() -> run(chatId, task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private boolean dispatchReactive(Long chatId, Supplier<Mono<Void>> task) {
+        if (reactivePending.incrementAndGet() > reactiveCapacity) {
+            reactivePending.decrementAndGet();
+            return false;
+        }
+        try {
+            // Обновления могут поступать из нескольких потоков (например, из webhook)
+            reactiveSink.emitNext(new ReactiveTask(chatId, task),
+                    Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            return true;
+        } catch (Sinks.EmissionException e) {
+            reactivePending.decrementAndGet();
+            return false;
+        }
+    }
+
+    private Mono<Void> runReactive(ReactiveTask task) {
+        return Mono.defer(() -> {
+                    reactivePending.decrementAndGet();
+                    reactiveActive.incrementAndGet();
+                    Timer.Sample sample = Timer.start();
+                    return task.work().get()
+                            .doFinally(signal -> {
+                                sample.stop(taskTimer);
+                                reactiveActive.decrementAndGet();
+                            });
+                })
+                .onErrorResume(e -> {
+                    log.error("Ошибка при обработке обновления чата {}", task.chatId(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private boolean dispatchVirtual(Long chatId, Runnable task) {
+        CompletableFuture<?>[] accepted = {null};
+        chatChains.compute(chatId, (id, chain) -> {
+            ChatChain current = chain != null ? chain : new ChatChain();
+            if (current.pending >= config.getQueueCapacity()) {
+                return current;
+            }
+            current.pending++;
+            // run перехватывает только Exception: Error завершил бы звено с ошибкой, и без handle
+            // все следующие задачи чата молча пропускались бы
+            current.tail = current.tail
+                    .handle((result, error) -> null)
+                    .thenRunAsync(() -> runVirtual(id, task), virtualExecutor);
+            accepted[0] = current.tail;
+            return current;
+        });
+        if (accepted[0] == null) {
+            return false;
+        }
+        virtualPending.incrementAndGet();
+        // Задача может завершиться раньше, чем подписан обработчик, и тогда он выполнится сразу
+        // в этом потоке, поэтому подписываться внутри compute нельзя: вложенное изменение карты
+        // завершилось бы ошибкой и оборвало цепочку чата
+        accepted[0].whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("Ошибка при обработке обновления чата {}", chatId, error);
+            }
+            releaseVirtual(chatId);
+        });
+        return true;
+    }
+
+    private void runVirtual(Long chatId, Runnable task) {
+        virtualPending.decrementAndGet();
+        virtualActive.incrementAndGet();
+        try {
+            run(chatId, task);
+        } finally {
+            virtualActive.decrementAndGet();
+        }
+    }
+
+    private void releaseVirtual(Long chatId) {
+        // Цепочка удаляется, как только у чата не остаётся задач, чтобы карта не росла бесконечно
+        chatChains.computeIfPresent(chatId, (id, chain) -> --chain.pending == 0 ? null : chain);
+    }
+
+    private void run(Long chatId, Runnable task) {
+        taskTimer.record(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Ошибка при обработке обновления чата {}", chatId, e);
+            }
+        });
+    }
+
+    private int stripeIndex(Long chatId) {
+        return Math.floorMod(Long.hashCode(chatId), stripes.length);
+    }
+
+    private int queueSize() {
+        int size = virtualPending.get() + reactivePending.get();
+        for (ThreadPoolExecutor stripe : stripes) {
+            size += stripe.getQueue().size();
+        }
+        return size;
+    }
+
+    private int activeCount() {
+        int active = virtualActive.get() + reactiveActive.get();
+        for (ThreadPoolExecutor stripe : stripes) {
+            active += stripe.getActiveCount();
+        }
+        return active;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            if (!stripe.awaitTermination(5, TimeUnit.SECONDS)) {
+                stripe.shutdownNow();
+            }
+        }
+        if (reactivePipeline != null) {
+            reactiveSink.tryEmitComplete();
+            reactivePipeline.dispose();
+        }
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+            if (!virtualExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                virtualExecutor.shutdownNow();
+            }
+        }
+    }
+
+    private record ReactiveTask(Long chatId, Supplier<Mono<Void>> work) {
+    }
+
+    private static class ChatChain {
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        private int pending;
+    }
+}
@@ -0,0 +1,226 @@
+package ru.yandex.architecture.telegrambot.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.architecture.telegrambot.config.AnswerCacheConfig;
+import ru.yandex.architecture.telegrambot.dto.QueryKey;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+import ru.yandex.architecture.telegrambot.service.IndexVersionTracker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Двухуровневый кэш ответов Python API.
+ * Горячий уровень - Caffeine в памяти (частотный допуск W-TinyLFU, TTL, ограничение размера),
+ * холодный - {@link DiskAnswerStore}, переживающий перезапуск приложения.
+ * Каждая запись помечена версией индекса, на которой построен ответ; после смены версии
+ * записи считаются устаревшими и удаляются при следующем обращении.
+ */
+@Slf4j
+@Service
+public class AnswerCache {
+
+    private final AnswerCacheConfig config;
+    private final ObjectMapper objectMapper;
+    private final IndexVersionTracker indexVersionTracker;
+    private final Cache<QueryKey, CachedAnswer> heap;
+    private final DiskAnswerStore disk;
+    private final Counter diskHitCounter;
+    private final Counter diskMissCounter;
+    private final Counter staleCounter;
+
+    public AnswerCache(AnswerCacheConfig config, ObjectMapper objectMapper,
+                       IndexVersionTracker indexVersionTracker, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.indexVersionTracker = indexVersionTracker;
+        this.heap = Caffeine.newBuilder()
+                .maximumSize(config.getMaxEntries())
+                .expireAfterWrite(config.getTtl())
+                .recordStats()
+                .build();
+        this.disk = config.isEnabled() && config.getDisk().isEnabled() ? openDisk(config.getDisk()) : null;
+
+        CaffeineCacheMetrics.monitor(meterRegistry, heap, "answers");
+        this.diskHitCounter = Counter.builder("python.api.cache.disk.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.diskMissCounter = Counter.builder("python.api.cache.disk.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.staleCounter = Counter.builder("python.api.cache.stale")
+                .register(meterRegistry);
+        if (disk != null) {
+            Gauge.builder("python.api.cache.disk.bytes", disk, DiskAnswerStore::bytesUsed)
+                    .register(meterRegistry);
+            Gauge.builder("python.api.cache.disk.size", disk, DiskAnswerStore::size)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Возвращает ответ из кэша или выполняет вызов и сохраняет успешный ответ на обоих уровнях.
+     */
+    public Mono<QueryResponse> get(QueryKey key, Supplier<Mono<QueryResponse>> loader) {
+        if (!config.isEnabled()) {
+            return loader.get();
+        }
+        return Mono.defer(() -> {
+            String indexVersion = indexVersionTracker.currentVersion();
+            QueryResponse cached = readHeap(key, indexVersion);
+            if (cached == null) {
+                cached = readDisk(key, indexVersion);
+            }
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return loader.get().doOnNext(response -> put(key, indexVersion, response));
+        });
+    }
+
+    /**
+     * Потоковый вариант {@link #get}: ответ из кэша отдаётся одним элементом, иначе элементы
+     * загрузчика передаются дальше, а в кэш после успешного завершения попадает последний из них.
+     */
+    public Flux<QueryResponse> getStream(QueryKey key, Supplier<Flux<QueryResponse>> loader) {
+        if (!config.isEnabled()) {
+            return loader.get();
+        }
+        return Flux.defer(() -> {
+            String indexVersion = indexVersionTracker.currentVersion();
+            QueryResponse cached = readHeap(key, indexVersion);
+            if (cached == null) {
+                cached = readDisk(key, indexVersion);
+            }
+            if (cached != null) {
+                return Flux.just(cached);
+            }
+            AtomicReference<QueryResponse> last = new AtomicReference<>();
+            return loader.get()
+                    .doOnNext(last::set)
+                    .doOnComplete(() -> {
+                        if (last.get() != null) {
+                            put(key, indexVersion, last.get());
+                        }
+                    });
+        });
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = heap.stats();
+        Map<String, Object> heapStats = new LinkedHashMap<>();
+        heapStats.put("size", heap.estimatedSize());
+        heapStats.put("hitCount", stats.hitCount());
+        heapStats.put("missCount", stats.missCount());
+        heapStats.put("hitRate", stats.hitRate());
+        heapStats.put("evictionCount", stats.evictionCount());
+        heapStats.put("staleCount", (long) staleCounter.count());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", config.isEnabled());
+        result.put("indexVersion", indexVersionTracker.currentVersion());
+        result.put("heap", heapStats);
+        if (disk != null) {
+            long diskHits = (long) diskHitCounter.count();
+            long diskRequests = diskHits + (long) diskMissCounter.count();
+            Map<String, Object> diskStats = new LinkedHashMap<>();
+            diskStats.put("size", disk.size());
+            diskStats.put("hitCount", diskHits);
+            diskStats.put("hitRate", diskRequests == 0 ? 1.0 : (double) diskHits / diskRequests);
+            diskStats.put("evictionCount", disk.evictions());
+            diskStats.put("bytesUsed", disk.bytesUsed());
+            diskStats.put("bytesCapacity", disk.capacity());
+            result.put("disk", diskStats);
+        }
+        return result;
+    }
+
+    private QueryResponse readHeap(QueryKey key, String indexVersion) {
+        CachedAnswer cached = heap.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+        if (!Objects.equals(cached.indexVersion(), indexVersion)) {
+            heap.invalidate(key);
+            staleCounter.increment();
+            return null;
+        }
+        return cached.response();
+    }
+
+    private QueryResponse readDisk(QueryKey key, String indexVersion) {
+        // Пока версия индекса неизвестна, сохранённые ответы нельзя проверить: диск пропускается
+        if (disk == null || indexVersion == null) {
+            return null;
+        }
+        byte[] bytes = disk.get(key, indexVersion);
+        if (bytes == null) {
+            diskMissCounter.increment();
+            return null;
+        }
+        try {
+            QueryResponse response = objectMapper.readValue(bytes, QueryResponse.class);
+            diskHitCounter.increment();
+            heap.put(key, new CachedAnswer(response, indexVersion));
+            return response;
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать ответ из дискового кэша: {}", e.getMessage());
+            diskMissCounter.increment();
+            return null;
+        }
+    }
+
+    private void put(QueryKey key, String indexVersion, QueryResponse response) {
+        // Ответ помечается версией, действовавшей на момент запроса, поэтому смена версии
+        // во время запроса не оставит в кэше ответ, построенный на старом индексе
+        heap.put(key, new CachedAnswer(response, indexVersion));
+        if (disk == null || indexVersion == null) {
+            return;
+        }
+        try {
+            disk.put(key, indexVersion, objectMapper.writeValueAsBytes(response),
+                    System.currentTimeMillis() + config.getTtl().toMillis());
+        } catch (IOException e) {
+            log.warn("Не удалось записать ответ в дисковый кэш: {}", e.getMessage());
+        }
+    }
+
+    private DiskAnswerStore openDisk(AnswerCacheConfig.Disk diskConfig) {
+        try {
+            DiskAnswerStore store = new DiskAnswerStore(Path.of(diskConfig.getPath()), diskConfig.getSizeBytes());
+            log.info("Дисковый кэш ответов открыт: {} (записей: {})", diskConfig.getPath(), store.size());
+            return store;
+        } catch (IOException e) {
+            log.warn("Не удалось открыть дисковый кэш ответов {}, используется только кэш в памяти: {}",
+                    diskConfig.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    private record CachedAnswer(QueryResponse response, String indexVersion) {
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (disk != null) {
+            disk.close();
+        }
+    }
+}
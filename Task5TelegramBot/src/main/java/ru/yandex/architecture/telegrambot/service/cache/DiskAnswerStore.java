@@ -0,0 +1,223 @@
+package ru.yandex.architecture.telegrambot.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.architecture.telegrambot.dto.QueryKey;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Дисковый уровень кэша ответов: журнал записей в файле, отображённом в память.
+ * Индекс восстанавливается при запуске сканированием файла; повреждённый файл начинается заново.
+ * Когда место заканчивается, журнал начинается заново (все записи вытесняются разом).
+ * <p>
+ * Формат записи: int длина, long срок жизни (epoch ms), int topK, int длина ключа, ключ,
+ * int длина версии индекса, версия, int длина значения, значение.
+ */
+@Slf4j
+public class DiskAnswerStore implements Closeable {
+
+    private static final int MAGIC = 0x51414332;
+    private static final int HEADER_SIZE = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final Map<QueryKey, Integer> index = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile int position;
+    private volatile long evictions;
+
+    public DiskAnswerStore(Path path, int capacity) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.capacity = capacity;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        if (buffer.getInt(0) == MAGIC) {
+            load();
+        } else {
+            reset();
+        }
+    }
+
+    /**
+     * Возвращает значение, если запись не истекла и построена на той же версии индекса.
+     * Устаревшие записи удаляются из индекса. Пока версия неизвестна (null), сравнить не с чем:
+     * возвращается промах, а записи сохраняются до тех пор, когда версия станет известна.
+     */
+    public byte[] get(QueryKey key, String indexVersion) {
+        if (indexVersion == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            Integer offset = index.get(key);
+            if (offset == null) {
+                return null;
+            }
+            if (buffer.getLong(offset + 4) < System.currentTimeMillis()) {
+                index.remove(key);
+                return null;
+            }
+            int cursor = offset + 16;
+            cursor += 4 + buffer.getInt(cursor);
+            byte[] version = new byte[buffer.getInt(cursor)];
+            buffer.get(cursor + 4, version);
+            if (!Arrays.equals(version, versionBytes(indexVersion))) {
+                index.remove(key);
+                return null;
+            }
+            cursor += 4 + version.length;
+            byte[] value = new byte[buffer.getInt(cursor)];
+            buffer.get(cursor + 4, value);
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(QueryKey key, String indexVersion, byte[] value, long expiresAt) {
+        byte[] keyBytes = key.query().getBytes(StandardCharsets.UTF_8);
+        byte[] version = versionBytes(indexVersion);
+        int recordSize = 4 + 8 + 4 + 4 + keyBytes.length + 4 + version.length + 4 + value.length;
+        if (HEADER_SIZE + recordSize + 4 > capacity) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (position + recordSize + 4 > capacity) {
+                evictions += index.size();
+                reset();
+            }
+            int offset = position;
+            buffer.putLong(offset + 4, expiresAt);
+            buffer.putInt(offset + 12, key.topK());
+            int cursor = putBytes(offset + 16, keyBytes);
+            cursor = putBytes(cursor, version);
+            putBytes(cursor, value);
+            buffer.putInt(offset + recordSize, 0);
+            // Длина пишется последней: незавершённая запись при сбое не будет прочитана
+            buffer.putInt(offset, recordSize - 4);
+
+            index.put(key, offset);
+            position = offset + recordSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long bytesUsed() {
+        return position;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    private void load() {
+        long now = System.currentTimeMillis();
+        int offset = HEADER_SIZE;
+        while (offset + 4 <= capacity) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (!isValidRecord(offset, length)) {
+                log.warn("Дисковый кэш ответов повреждён (запись по смещению {}), журнал начат заново", offset);
+                reset();
+                return;
+            }
+            long expiresAt = buffer.getLong(offset + 4);
+            int topK = buffer.getInt(offset + 12);
+            byte[] keyBytes = new byte[buffer.getInt(offset + 16)];
+            buffer.get(offset + 20, keyBytes);
+            QueryKey key = new QueryKey(new String(keyBytes, StandardCharsets.UTF_8), topK);
+            if (expiresAt >= now) {
+                index.put(key, offset);
+            } else {
+                index.remove(key);
+            }
+            offset += 4 + length;
+        }
+        position = offset;
+    }
+
+    /**
+     * Проверяет, что длины полей записи согласованы с её длиной и записью умещаются в файл.
+     */
+    private boolean isValidRecord(int offset, int length) {
+        // Минимальная запись: срок жизни, topK и три пустых поля с длинами
+        if (length < 24 || length > capacity - offset - 8) {
+            return false;
+        }
+        int end = offset + 4 + length;
+        int cursor = offset + 16;
+        for (int field = 0; field < 3; field++) {
+            if (cursor + 4 > end) {
+                return false;
+            }
+            int fieldLength = buffer.getInt(cursor);
+            if (fieldLength < 0 || fieldLength > end - cursor - 4) {
+                return false;
+            }
+            cursor += 4 + fieldLength;
+        }
+        return cursor == end;
+    }
+
+    private int putBytes(int offset, byte[] bytes) {
+        buffer.putInt(offset, bytes.length);
+        buffer.put(offset + 4, bytes);
+        return offset + 4 + bytes.length;
+    }
+
+    private static byte[] versionBytes(String indexVersion) {
+        return indexVersion != null ? indexVersion.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    private void reset() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(HEADER_SIZE, 0);
+        position = HEADER_SIZE;
+        index.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
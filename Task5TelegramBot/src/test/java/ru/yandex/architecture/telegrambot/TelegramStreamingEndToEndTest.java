@@ -0,0 +1,205 @@
+package ru.yandex.architecture.telegrambot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Потоковый ответ (telegram.streaming.enabled) между поддельным Bot API Telegram и поддельным
+ * Python API, который отдаёт ответ событиями server-sent events: бот отправляет сообщение-заглушку
+ * и правит его, пока не покажет полный ответ.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class TelegramStreamingEndToEndTest {
+
+    private static final String TOKEN = "123:test";
+    private static final String SECRET = "webhook-secret";
+    private static final String WEBHOOK_PATH = "/telegram/webhook";
+    private static final int MESSAGE_ID = 100;
+    private static final String FULL_ANSWER = "Люк Скайуокер - рыцарь-джедай и сын Энакина.\n\n📚 Найдено источников: 3";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Вызовы Bot API: метод и тело запроса
+    private static final BlockingQueue<ApiCall> TELEGRAM_CALLS = new LinkedBlockingQueue<>();
+    // Обычные запросы /query: при работающем потоке их быть не должно
+    private static final AtomicInteger PLAIN_QUERIES = new AtomicInteger();
+    // Bot API отвечает 429 на каждую итоговую правку
+    private static final AtomicBoolean REJECT_FINAL_EDITS = new AtomicBoolean();
+    private static final AtomicInteger REJECTED_EDITS = new AtomicInteger();
+
+    private static final DisposableServer TELEGRAM = HttpServer.create()
+            .port(0)
+            .route(routes -> routes.post("/bot" + TOKEN + "/{method}", (request, response) -> request.receive()
+                    .aggregate()
+                    .asString()
+                    .defaultIfEmpty("{}")
+                    .flatMap(body -> {
+                        String method = request.param("method");
+                        JsonNode call = readTree(body);
+                        TELEGRAM_CALLS.add(new ApiCall(method, call));
+                        if (REJECT_FINAL_EDITS.get() && "editMessageText".equalsIgnoreCase(method)
+                                && !call.path("text").asText().endsWith("▌")) {
+                            REJECTED_EDITS.incrementAndGet();
+                            return response.status(HttpStatus.TOO_MANY_REQUESTS.value())
+                                    .header("Content-Type", "application/json")
+                                    .sendString(Mono.just("{\"ok\":false,\"error_code\":429,"
+                                            + "\"description\":\"Too Many Requests: retry after 0\","
+                                            + "\"parameters\":{\"retry_after\":0}}"))
+                                    .then();
+                        }
+                        String result = "sendMessage".equalsIgnoreCase(method)
+                                ? "{\"message_id\":" + MESSAGE_ID
+                                        + ",\"date\":0,\"chat\":{\"id\":42,\"type\":\"private\"}}"
+                                : "true";
+                        return response.header("Content-Type", "application/json")
+                                .sendString(Mono.just("{\"ok\":true,\"result\":" + result + "}"))
+                                .then();
+                    })))
+            .bindNow();
+
+    private static final DisposableServer PYTHON_API = HttpServer.create()
+            .port(0)
+            .route(routes -> routes
+                    .get("/health", (request, response) -> response.header("Content-Type", "application/json")
+                            .sendString(Mono.just("{\"status\":\"healthy\",\"index_version\":\"test\"}")))
+                    .post("/query", (request, response) -> {
+                        PLAIN_QUERIES.incrementAndGet();
+                        return response.header("Content-Type", "application/json")
+                                .sendString(Mono.just("{\"answer\":\"Ответ без потока\",\"chunks_count\":1}"));
+                    })
+                    // Ответ приходит фрагментами с паузами, как при генерации
+                    .post("/query_stream", (request, response) -> request.receive().then()
+                            .then(response.header("Content-Type", "text/event-stream")
+                                    .sendString(Flux.just(
+                                                    "data: {\"delta\": \"Люк Скайуокер\"}\n\n",
+                                                    "data: {\"delta\": \" - рыцарь-джедай\"}\n\n",
+                                                    "data: {\"delta\": \" и сын Энакина.\"}\n\n",
+                                                    "event: done\ndata: {\"chunks_count\": 3}\n\n")
+                                            .delayElements(Duration.ofMillis(100)))
+                                    .then())))
+            .bindNow();
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("telegram.bot.token", () -> TOKEN);
+        registry.add("telegram.bot.username", () -> "test_bot");
+        registry.add("telegram.bot.api-url", () -> "http://localhost:" + TELEGRAM.port() + "/bot");
+        registry.add("telegram.bot.webhook.enabled", () -> "true");
+        registry.add("telegram.bot.webhook.url", () -> "https://bot.example.com");
+        registry.add("telegram.bot.webhook.secret-token", () -> SECRET);
+        registry.add("telegram.streaming.enabled", () -> "true");
+        registry.add("telegram.streaming.min-edit-interval", () -> "50ms");
+        registry.add("telegram.send-scheduler.chat-interval", () -> "50ms");
+        registry.add("telegram.send-scheduler.max-retries", () -> "2");
+        registry.add("python.api.url", () -> "http://localhost:" + PYTHON_API.port());
+        registry.add("python.api.cache.disk.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopServers() {
+        TELEGRAM.disposeNow();
+        PYTHON_API.disposeNow();
+    }
+
+    @AfterEach
+    void reset() {
+        REJECT_FINAL_EDITS.set(false);
+        TELEGRAM_CALLS.clear();
+    }
+
+    @Test
+    void streamedAnswerReplacesPlaceholder() throws InterruptedException {
+        assertThat(postUpdate(42, "Кто такой Люк Скайуокер?")).isEqualTo(HttpStatus.OK);
+
+        ApiCall placeholder = nextCall("sendMessage");
+        assertThat(placeholder.body().path("chat_id").asText()).isEqualTo("42");
+
+        // Промежуточные правки могут быть прорежены, итоговая приходит всегда и последней
+        ApiCall edit = nextCall("editMessageText");
+        while (edit.body().path("text").asText().endsWith("▌")) {
+            edit = nextCall("editMessageText");
+        }
+        assertThat(edit.body().path("message_id").asInt()).isEqualTo(MESSAGE_ID);
+        assertThat(edit.body().path("text").asText()).isEqualTo(FULL_ANSWER);
+        assertThat(PLAIN_QUERIES).hasValue(0);
+    }
+
+    @Test
+    void rejectedFinalEditIsSentAsNewMessage() throws InterruptedException {
+        REJECT_FINAL_EDITS.set(true);
+        assertThat(postUpdate(43, "Кто такой Люк Скайуокер?")).isEqualTo(HttpStatus.OK);
+        nextCall("sendMessage");
+
+        // Итоговая правка повторяется не больше max-retries раз, затем ответ уходит новым сообщением
+        ApiCall answer = nextCall("sendMessage");
+        assertThat(answer.body().path("chat_id").asText()).isEqualTo("43");
+        assertThat(answer.body().path("text").asText()).isEqualTo(FULL_ANSWER);
+        assertThat(REJECTED_EDITS).hasValue(3);
+    }
+
+    private HttpStatus postUpdate(long chatId, String text) {
+        String update = """
+                {"update_id": %d, "message": {"message_id": 10, "date": 0, "text": "%s",
+                 "chat": {"id": %d, "type": "private"},
+                 "from": {"id": %d, "is_bot": false, "first_name": "Test"}}}
+                """.formatted(chatId, text, chatId, chatId);
+        return WebClient.create("http://localhost:" + port)
+                .post()
+                .uri(WEBHOOK_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-Telegram-Bot-Api-Secret-Token", SECRET)
+                .bodyValue(update)
+                .exchangeToMono(response -> Mono.just(HttpStatus.valueOf(response.statusCode().value())))
+                .block(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Ждёт вызова метода Bot API, пропуская остальные (например, sendChatAction).
+     */
+    private static ApiCall nextCall(String method) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            ApiCall call = TELEGRAM_CALLS.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (call != null && call.method().equalsIgnoreCase(method)) {
+                return call;
+            }
+        }
+        throw new AssertionError("Bot API не получил вызов " + method);
+    }
+
+    private static JsonNode readTree(String body) {
+        try {
+            return MAPPER.readTree(body);
+        } catch (Exception e) {
+            return MAPPER.createObjectNode();
+        }
+    }
+
+    private record ApiCall(String method, JsonNode body) {
+    }
+}
@@ -0,0 +1,153 @@
+package ru.yandex.architecture.telegrambot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Бот в режиме webhook между поддельным Bot API Telegram и поддельным Python API:
+ * обновление приходит на webhook, ответ уходит в Telegram через sendMessage.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class TelegramWebhookEndToEndTest {
+
+    private static final String TOKEN = "123:test";
+    private static final String SECRET = "webhook-secret";
+    private static final String WEBHOOK_PATH = "/telegram/webhook";
+    private static final String ANSWER = "Люк Скайуокер - рыцарь-джедай.";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Вызовы Bot API: метод и тело запроса
+    private static final BlockingQueue<ApiCall> TELEGRAM_CALLS = new LinkedBlockingQueue<>();
+
+    private static final DisposableServer TELEGRAM = HttpServer.create()
+            .port(0)
+            .route(routes -> routes.post("/bot" + TOKEN + "/{method}", (request, response) -> request.receive()
+                    .aggregate()
+                    .asString()
+                    .defaultIfEmpty("{}")
+                    .flatMap(body -> {
+                        String method = request.param("method");
+                        TELEGRAM_CALLS.add(new ApiCall(method, readTree(body)));
+                        String result = "sendMessage".equalsIgnoreCase(method)
+                                ? "{\"message_id\":100,\"date\":0,\"chat\":{\"id\":42,\"type\":\"private\"}}"
+                                : "true";
+                        return response.header("Content-Type", "application/json")
+                                .sendString(Mono.just("{\"ok\":true,\"result\":" + result + "}"))
+                                .then();
+                    })))
+            .bindNow();
+
+    private static final DisposableServer PYTHON_API = HttpServer.create()
+            .port(0)
+            .route(routes -> routes
+                    .get("/health", (request, response) -> response.header("Content-Type", "application/json")
+                            .sendString(Mono.just("{\"status\":\"healthy\",\"index_version\":\"test\"}")))
+                    .post("/query", (request, response) -> response.header("Content-Type", "application/json")
+                            .sendString(Mono.just("{\"answer\":\"" + ANSWER + "\",\"chunks_count\":3}"))))
+            .bindNow();
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("telegram.bot.token", () -> TOKEN);
+        registry.add("telegram.bot.username", () -> "test_bot");
+        registry.add("telegram.bot.api-url", () -> "http://localhost:" + TELEGRAM.port() + "/bot");
+        registry.add("telegram.bot.webhook.enabled", () -> "true");
+        registry.add("telegram.bot.webhook.url", () -> "https://bot.example.com");
+        registry.add("telegram.bot.webhook.secret-token", () -> SECRET);
+        registry.add("python.api.url", () -> "http://localhost:" + PYTHON_API.port());
+        registry.add("python.api.cache.disk.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopServers() {
+        TELEGRAM.disposeNow();
+        PYTHON_API.disposeNow();
+    }
+
+    @Test
+    void questionIsAnsweredThroughWebhook() throws InterruptedException {
+        ApiCall setWebhook = nextCall("setWebhook");
+        assertThat(setWebhook.body().path("url").asText()).isEqualTo("https://bot.example.com" + WEBHOOK_PATH);
+        assertThat(setWebhook.body().path("secret_token").asText()).isEqualTo(SECRET);
+
+        HttpStatus status = postUpdate(SECRET, "Кто такой Люк Скайуокер?");
+
+        assertThat(status).isEqualTo(HttpStatus.OK);
+        ApiCall sendMessage = nextCall("sendMessage");
+        assertThat(sendMessage.body().path("chat_id").asText()).isEqualTo("42");
+        assertThat(sendMessage.body().path("text").asText()).contains(ANSWER);
+    }
+
+    @Test
+    void updateWithWrongSecretIsRejected() {
+        assertThat(postUpdate("wrong", "Кто такой Люк Скайуокер?")).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(postUpdate(null, "Кто такой Люк Скайуокер?")).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    private HttpStatus postUpdate(String secret, String text) {
+        String update = """
+                {"update_id": 1, "message": {"message_id": 10, "date": 0, "text": "%s",
+                 "chat": {"id": 42, "type": "private"},
+                 "from": {"id": 42, "is_bot": false, "first_name": "Test"}}}
+                """.formatted(text);
+        return WebClient.create("http://localhost:" + port)
+                .post()
+                .uri(WEBHOOK_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers -> {
+                    if (secret != null) {
+                        headers.set("X-Telegram-Bot-Api-Secret-Token", secret);
+                    }
+                })
+                .bodyValue(update)
+                .exchangeToMono(response -> Mono.just(HttpStatus.valueOf(response.statusCode().value())))
+                .block(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Ждёт вызова метода Bot API, пропуская остальные (например, sendChatAction).
+     */
+    private static ApiCall nextCall(String method) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            ApiCall call = TELEGRAM_CALLS.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (call != null && call.method().equalsIgnoreCase(method)) {
+                return call;
+            }
+        }
+        throw new AssertionError("Bot API не получил вызов " + method);
+    }
+
+    private static JsonNode readTree(String body) {
+        try {
+            return MAPPER.readTree(body);
+        } catch (Exception e) {
+            return MAPPER.createObjectNode();
+        }
+    }
+
+    private record ApiCall(String method, JsonNode body) {
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.architecture.telegrambot.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.architecture.telegrambot.config.DispatcherConfig;
+import ru.yandex.architecture.telegrambot.service.UpdateDispatcher;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Диспетчер обновлений на платформенных и виртуальных потоках: 1000 чатов одновременно
+ * ждут медленного ответа Python API (блокирующее ожидание, как при вызове block()).
+ * Измеряется время, за которое обработаны все запросы; с профилировщиком -prof gc видно и
+ * потребление памяти.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DispatcherBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public DispatcherConfig.Mode mode;
+
+    @Param("1000")
+    public int queries;
+
+    @Param("100")
+    public long queryMillis;
+
+    private UpdateDispatcher dispatcher;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        DispatcherConfig config = new DispatcherConfig();
+        config.setMode(mode);
+        // Как в application.properties; очередь вмещает все запросы, чтобы ни один не был отклонён
+        config.setWorkers(16);
+        config.setQueueCapacity(queries);
+        dispatcher = new UpdateDispatcher(config, new SimpleMeterRegistry());
+        dispatcher.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    public void slowQueries() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(queries);
+        for (long chatId = 0; chatId < queries; chatId++) {
+            dispatcher.dispatch(chatId, () -> {
+                try {
+                    Thread.sleep(queryMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        if (!done.await(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Запросы не обработаны за отведённое время");
+        }
+    }
+}
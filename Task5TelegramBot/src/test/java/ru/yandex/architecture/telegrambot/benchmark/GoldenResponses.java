@@ -0,0 +1,93 @@
+package ru.yandex.architecture.telegrambot.benchmark;
+
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ответы Python API, построенные по золотому набору вопросов Task7/golden_questions.txt:
+ * ответ, рассуждения и три чанка по 200 символов, как их возвращает api_secure.py.
+ * Путь к файлу можно задать свойством golden.questions.
+ */
+final class GoldenResponses {
+
+    private static final int CHUNKS = 3;
+    private static final int CHUNK_LENGTH = 200;
+
+    private GoldenResponses() {
+    }
+
+    static List<QueryResponse> load() {
+        List<QueryResponse> responses = new ArrayList<>();
+        for (String[] fields : rows()) {
+            responses.add(response(fields[0], fields[1], fields[2]));
+        }
+        return responses;
+    }
+
+    /**
+     * Вопросы золотого набора в том же порядке, что и ответы {@link #load()}.
+     */
+    static List<String> questions() {
+        return rows().stream().map(fields -> fields[0]).toList();
+    }
+
+    private static List<String[]> rows() {
+        Path file = Path.of(System.getProperty("golden.questions", "../Task7/golden_questions.txt"));
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать золотой набор вопросов " + file.toAbsolutePath(), e);
+        }
+        List<String[]> rows = new ArrayList<>();
+        for (String line : lines) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\|");
+            if (fields.length < 3) {
+                continue;
+            }
+            rows.add(new String[] {fields[0].trim(), fields[1].trim(), fields[2].trim()});
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalStateException("В файле " + file + " нет вопросов");
+        }
+        return rows;
+    }
+
+    private static QueryResponse response(String question, String expected, String category) {
+        QueryResponse response = new QueryResponse();
+        response.setAnswer(expected + ". Это следует из найденных фрагментов базы знаний о вселенной "
+                + "Звёздных войн; подробнее о теме «" + category + "» можно спросить отдельно.");
+        response.setReasoning("Вопрос «" + question + "» относится к теме «" + category + "». "
+                + "Найдено " + CHUNKS + " релевантных фрагмента, ответ составлен по первому из них, "
+                + "остальные его подтверждают.");
+        response.setChunksCount(CHUNKS);
+        List<QueryResponse.ChunkInfo> chunks = new ArrayList<>();
+        for (int i = 0; i < CHUNKS; i++) {
+            QueryResponse.ChunkInfo chunk = new QueryResponse.ChunkInfo();
+            chunk.setText(pad(expected + ". " + question + " ", CHUNK_LENGTH));
+            chunk.setSource(category + "_" + i + ".txt");
+            chunk.setDistance(0.2 + 0.1 * i);
+            chunks.add(chunk);
+        }
+        response.setChunks(chunks);
+        return response;
+    }
+
+    private static String pad(String text, int length) {
+        StringBuilder padded = new StringBuilder(length);
+        while (padded.length() < length) {
+            padded.append(text);
+        }
+        return padded.substring(0, length);
+    }
+}
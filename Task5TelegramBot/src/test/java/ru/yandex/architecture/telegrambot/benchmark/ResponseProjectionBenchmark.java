@@ -0,0 +1,88 @@
+package ru.yandex.architecture.telegrambot.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+import ru.yandex.architecture.telegrambot.dto.QueryResponseDeserializer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение ответа Python API до и после проекции (python.api.projection.*):
+ * <ul>
+ *     <li>FULL - как раньше: ответ целиком, включая рассуждения и тексты чанков,
+ *     разбирается обычным ObjectMapper;</li>
+ *     <li>SKIPPED - Python API не поддерживает проекцию и присылает ответ целиком,
+ *     а {@link QueryResponseDeserializer} пропускает ненужные поля;</li>
+ *     <li>PROJECTED - Python API присылает только answer и chunks_count.</li>
+ * </ul>
+ * Размер ответа в байтах печатается при запуске, аллокации на ответ показывает
+ * профилировщик -prof gc (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseProjectionBenchmark {
+
+    public enum Variant {
+        FULL, SKIPPED, PROJECTED
+    }
+
+    @Param({"FULL", "SKIPPED", "PROJECTED"})
+    public Variant variant;
+
+    private byte[][] payloads;
+    private ObjectReader reader;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<QueryResponse> responses = GoldenResponses.load();
+        ObjectMapper writer = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        payloads = new byte[responses.size()][];
+        long bytes = 0;
+        for (int i = 0; i < responses.size(); i++) {
+            QueryResponse response = responses.get(i);
+            if (variant == Variant.PROJECTED) {
+                response.setReasoning(null);
+                response.setChunks(null);
+            }
+            payloads[i] = writer.writeValueAsBytes(response);
+            bytes += payloads[i].length;
+        }
+        System.out.printf("%n%s: %d ответов, в среднем %d байт на ответ%n",
+                variant, payloads.length, bytes / payloads.length);
+
+        ObjectMapper mapper = new ObjectMapper();
+        if (variant != Variant.FULL) {
+            mapper.registerModule(new SimpleModule()
+                    .addDeserializer(QueryResponse.class, new QueryResponseDeserializer(false, false)));
+        }
+        reader = mapper.readerFor(QueryResponse.class);
+    }
+
+    @Benchmark
+    public QueryResponse decode() throws IOException {
+        byte[] payload = payloads[next];
+        next = (next + 1) % payloads.length;
+        return reader.readValue(payload);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.yandex.architecture.telegrambot.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.architecture.telegrambot.config.TimerConfig;
+import ru.yandex.architecture.telegrambot.service.TimerWheel;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Постановка и отмена таймаута, когда на таймере уже ждут {@link #pending} других:
+ * так бот ставит срок на каждый запрос и снимает его, когда ответ получен.
+ * <ul>
+ *     <li>WHEEL - {@link TimerWheel} (колесо Netty);</li>
+ *     <li>EXECUTOR - ScheduledThreadPoolExecutor с удалением отменённых задач, как в
+ *     Schedulers.parallel(), который Reactor использует для timeout и delay по умолчанию.</li>
+ * </ul>
+ * Примерный объём памяти на ожидающий таймаут печатается при запуске, аллокации на операцию
+ * показывает профилировщик -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerBenchmark {
+
+    public enum Implementation {
+        WHEEL, EXECUTOR
+    }
+
+    // Ожидающие таймауты не срабатывают за время замера
+    private static final Duration PENDING_DELAY = Duration.ofHours(1);
+    private static final Duration REQUEST_DEADLINE = Duration.ofSeconds(30);
+    private static final Runnable NOOP = () -> {
+    };
+
+    @Param({"WHEEL", "EXECUTOR"})
+    public Implementation implementation;
+
+    @Param("100000")
+    public int pending;
+
+    private TimerWheel timerWheel;
+    private ScheduledThreadPoolExecutor executor;
+
+    @Setup
+    public void setUp() {
+        long before = usedMemory();
+        if (implementation == Implementation.WHEEL) {
+            timerWheel = new TimerWheel(new TimerConfig(), new SimpleMeterRegistry());
+            for (int i = 0; i < pending; i++) {
+                timerWheel.schedule(PENDING_DELAY, NOOP);
+            }
+        } else {
+            executor = new ScheduledThreadPoolExecutor(1);
+            executor.setRemoveOnCancelPolicy(true);
+            for (int i = 0; i < pending; i++) {
+                executor.schedule(NOOP, PENDING_DELAY.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        System.out.printf("%n%s: %d ожидающих таймаутов, около %d байт на таймаут%n",
+                implementation, pending, (usedMemory() - before) / Math.max(1, pending));
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (timerWheel != null) {
+            timerWheel.stop();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public void scheduleAndCancel() {
+        if (implementation == Implementation.WHEEL) {
+            timerWheel.schedule(REQUEST_DEADLINE, NOOP).dispose();
+        } else {
+            executor.schedule(NOOP, REQUEST_DEADLINE.toNanos(), TimeUnit.NANOSECONDS).cancel(false);
+        }
+    }
+
+    private static long usedMemory() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
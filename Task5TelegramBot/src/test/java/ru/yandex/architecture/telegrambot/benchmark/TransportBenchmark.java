@@ -0,0 +1,129 @@
+package ru.yandex.architecture.telegrambot.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.DomainSocketAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+import ru.yandex.architecture.telegrambot.config.WebClientConfig;
+import ru.yandex.architecture.telegrambot.dto.QueryRequest;
+import ru.yandex.architecture.telegrambot.service.BackendClients;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Задержка запроса к реплике Python API на той же машине по TCP (loopback) и через
+ * Unix domain socket (python.api.unix-socket). Запросы идут через {@link BackendClients}
+ * с пулом соединений из {@link WebClientConfig}; реплика отвечает сразу, поэтому измеряется
+ * только транспорт. Режим SampleTime показывает и хвосты распределения (p0.99, p0.999).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportBenchmark {
+
+    public enum Transport {
+        TCP, UDS
+    }
+
+    private static final String ANSWER = "{\"answer\":\"Люк Скайуокер - джедай\",\"chunks_count\":3}";
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Param({"TCP", "UDS"})
+    public Transport transport;
+
+    private final AtomicInteger tcpRequests = new AtomicInteger();
+    private Path socketDir;
+    private DisposableServer tcpServer;
+    private DisposableServer socketServer;
+    private ConnectionProvider connectionProvider;
+    private BackendClients clients;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (!Epoll.isAvailable()) {
+            throw new IllegalStateException("Нативный транспорт epoll недоступен", Epoll.unavailabilityCause());
+        }
+        tcpServer = bind(HttpServer.create().port(0), tcpRequests);
+        url = "http://localhost:" + tcpServer.port();
+
+        PythonApiConfig apiConfig = new PythonApiConfig();
+        apiConfig.setUrl(url);
+        if (transport == Transport.UDS) {
+            socketDir = Files.createTempDirectory("transport-benchmark");
+            String socketPath = socketDir.resolve("api.sock").toString();
+            socketServer = bind(HttpServer.create().bindAddress(() -> new DomainSocketAddress(socketPath)),
+                    new AtomicInteger());
+            apiConfig.setUnixSocket(socketPath);
+        }
+
+        WebClientConfig config = new WebClientConfig();
+        connectionProvider = config.pythonApiConnectionProvider(apiConfig);
+        HttpClient httpClient = config.pythonApiHttpClient(connectionProvider, apiConfig);
+        WebClient webClient = config.webClient(httpClient, apiConfig, new ObjectMapper());
+        clients = new BackendClients(apiConfig, webClient, httpClient);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        connectionProvider.disposeLater().block(TIMEOUT);
+        tcpServer.disposeNow();
+        if (socketServer != null) {
+            socketServer.disposeNow();
+            Files.deleteIfExists(socketDir.resolve("api.sock"));
+            Files.deleteIfExists(socketDir);
+            // Иначе запросы незаметно ушли бы по TCP и сравнение потеряло бы смысл
+            if (tcpRequests.get() > 0) {
+                throw new IllegalStateException("Запросы к сокету повторялись по TCP: " + tcpRequests.get());
+            }
+        }
+    }
+
+    @Benchmark
+    public String query() {
+        return clients.execute(url, client -> client.post()
+                        .uri("/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(new QueryRequest("Кто такой Люк Скайуокер?", 3, false, false))
+                        .retrieve()
+                        .bodyToMono(String.class))
+                .block(TIMEOUT);
+    }
+
+    private static DisposableServer bind(HttpServer server, AtomicInteger requests) {
+        return server
+                .handle((request, response) -> request.receive().then()
+                        .doOnSuccess(ignored -> requests.incrementAndGet())
+                        .then(response.header("Content-Type", "application/json")
+                                .sendString(Mono.just(ANSWER))
+                                .then()))
+                .bindNow();
+    }
+}
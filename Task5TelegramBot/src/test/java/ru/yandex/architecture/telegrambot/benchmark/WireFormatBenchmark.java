@@ -0,0 +1,89 @@
+package ru.yandex.architecture.telegrambot.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+import ru.yandex.architecture.telegrambot.dto.QueryRequest;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обмен с Python API в JSON и в CBOR (python.api.wire-formats): запись запроса и разбор ответа.
+ * Ответы строятся по золотому набору вопросов и передаются целиком, с рассуждениями и текстами
+ * чанков. Средний размер запроса и ответа в байтах печатается при запуске, аллокации показывает
+ * профилировщик -prof gc (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"JSON", "CBOR"})
+    public PythonApiConfig.WireFormat format;
+
+    private QueryRequest[] requests;
+    private byte[][] responses;
+    private ObjectWriter requestWriter;
+    private ObjectReader responseReader;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Те же настройки, что у кодеков WebClient в WebClientConfig
+        ObjectMapper mapper = format == PythonApiConfig.WireFormat.CBOR
+                ? Jackson2ObjectMapperBuilder.cbor().build()
+                : Jackson2ObjectMapperBuilder.json().build();
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        requestWriter = mapper.writerFor(QueryRequest.class);
+        responseReader = mapper.readerFor(QueryResponse.class);
+
+        List<String> questions = GoldenResponses.questions();
+        List<QueryResponse> golden = GoldenResponses.load();
+        requests = new QueryRequest[golden.size()];
+        responses = new byte[golden.size()][];
+        long requestBytes = 0;
+        long responseBytes = 0;
+        for (int i = 0; i < golden.size(); i++) {
+            requests[i] = new QueryRequest(questions.get(i), 3, true, true);
+            requestBytes += requestWriter.writeValueAsBytes(requests[i]).length;
+            responses[i] = mapper.writeValueAsBytes(golden.get(i));
+            responseBytes += responses[i].length;
+        }
+        System.out.printf("%n%s: %d ответов, в среднем %d байт на запрос и %d байт на ответ%n",
+                format, golden.size(), requestBytes / golden.size(), responseBytes / golden.size());
+    }
+
+    @Benchmark
+    public byte[] encodeRequest() throws IOException {
+        QueryRequest request = requests[next];
+        next = (next + 1) % requests.length;
+        return requestWriter.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public QueryResponse decodeResponse() throws IOException {
+        byte[] payload = responses[next];
+        next = (next + 1) % responses.length;
+        return responseReader.readValue(payload);
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import ru.yandex.architecture.telegrambot.dto.QueryRequest;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Кодеки WebClient: запрос уходит в том формате, который указан в Content-Type, и ответ
+ * разбирается по Content-Type ответа. Кодеки CBOR не должны перехватывать обмен в JSON.
+ */
+class WebClientConfigCodecTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper CBOR = Jackson2ObjectMapperBuilder.cbor().build();
+
+    private final List<String> receivedContentTypes = new CopyOnWriteArrayList<>();
+    private DisposableServer server;
+    private ConnectionProvider connectionProvider;
+    private WebClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        // Python API отвечает в том же формате, в котором получил запрос
+        server = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> request.receive().aggregate().asByteArray().flatMap(body -> {
+                    String contentType = request.requestHeaders().get("Content-Type");
+                    receivedContentTypes.add(contentType);
+                    ObjectMapper mapper = MediaType.APPLICATION_CBOR.includes(MediaType.parseMediaType(contentType))
+                            ? CBOR : JSON;
+                    try {
+                        QueryRequest query = mapper.readValue(body, QueryRequest.class);
+                        QueryResponse answer = new QueryResponse();
+                        answer.setAnswer("Ответ на «" + query.getQuery() + "»");
+                        answer.setChunksCount(query.getTopK());
+                        return response.header("Content-Type", contentType)
+                                .sendByteArray(Mono.just(mapper.writeValueAsBytes(answer)))
+                                .then();
+                    } catch (Exception e) {
+                        return response.status(400).send();
+                    }
+                }))
+                .bindNow();
+
+        PythonApiConfig apiConfig = new PythonApiConfig();
+        apiConfig.setUrl("http://localhost:" + server.port());
+        WebClientConfig config = new WebClientConfig();
+        connectionProvider = config.pythonApiConnectionProvider(apiConfig);
+        webClient = config.webClient(config.pythonApiHttpClient(connectionProvider, apiConfig),
+                apiConfig, new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionProvider.disposeLater().block(Duration.ofSeconds(5));
+        server.disposeNow();
+    }
+
+    @Test
+    void jsonRoundTrip() {
+        QueryResponse response = query(MediaType.APPLICATION_JSON);
+
+        assertThat(response.getAnswer()).isEqualTo("Ответ на «Кто такой Люк?»");
+        assertThat(response.getChunksCount()).isEqualTo(3);
+        assertThat(receivedContentTypes).singleElement().asString().startsWith(MediaType.APPLICATION_JSON_VALUE);
+    }
+
+    @Test
+    void cborRoundTrip() {
+        QueryResponse response = query(MediaType.APPLICATION_CBOR);
+
+        assertThat(response.getAnswer()).isEqualTo("Ответ на «Кто такой Люк?»");
+        assertThat(response.getChunksCount()).isEqualTo(3);
+        assertThat(receivedContentTypes).singleElement().asString().startsWith(MediaType.APPLICATION_CBOR_VALUE);
+    }
+
+    private QueryResponse query(MediaType mediaType) {
+        return webClient.post()
+                .uri("http://localhost:" + server.port() + "/query")
+                .contentType(mediaType)
+                .accept(mediaType, MediaType.APPLICATION_JSON)
+                .bodyValue(new QueryRequest("Кто такой Люк?", 3, false, false))
+                .retrieve()
+                .bodyToMono(QueryResponse.class)
+                .block(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,117 @@
+package ru.yandex.architecture.telegrambot.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочная проверка пула соединений: Python API обслуживает WORKERS запросов одновременно,
+ * а бот присылает намного больше. Без ограничений запросы копятся в очереди Python API и ждут
+ * всё дольше; с настроенным пулом лишние запросы быстро получают ошибку, а задержка
+ * остальных ограничена.
+ */
+class WebClientConfigLoadTest {
+
+    private static final int WORKERS = 4;
+    private static final Duration SERVICE_TIME = Duration.ofMillis(50);
+    private static final int REQUESTS = 100;
+    private static final Duration PENDING_ACQUIRE_TIMEOUT = Duration.ofMillis(300);
+
+    private Scheduler workers;
+    private DisposableServer server;
+    private ConnectionProvider connectionProvider;
+
+    @BeforeEach
+    void setUp() {
+        // Перегруженный Python API: WORKERS обработчиков и неограниченная очередь перед ними
+        workers = Schedulers.fromExecutorService(Executors.newFixedThreadPool(WORKERS));
+        server = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> request.receive().then(Mono.fromCallable(() -> {
+                            Thread.sleep(SERVICE_TIME.toMillis());
+                            return "{\"answer\":\"ok\",\"chunks_count\":1}";
+                        }).subscribeOn(workers))
+                        .flatMap(body -> response.header("Content-Type", "application/json")
+                                .sendString(Mono.just(body))
+                                .then()))
+                .bindNow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (connectionProvider != null) {
+            connectionProvider.disposeLater().block(Duration.ofSeconds(5));
+        }
+        server.disposeNow();
+        workers.dispose();
+    }
+
+    @Test
+    void tailLatencyStaysBoundedWhenBackendIsSaturated() {
+        List<Long> unbounded = latencies(pool(REQUESTS * 2, REQUESTS * 2, Duration.ofSeconds(30)));
+        List<Long> bounded = latencies(pool(WORKERS, 2 * WORKERS, PENDING_ACQUIRE_TIMEOUT));
+
+        // Без ограничений последний запрос ждёт, пока Python API разберёт всю очередь
+        long queueDrainMillis = REQUESTS / WORKERS * SERVICE_TIME.toMillis();
+        assertThat(max(unbounded)).isGreaterThan(queueDrainMillis * 3 / 4);
+        // С пулом запрос ждёт соединение не дольше PENDING_ACQUIRE_TIMEOUT, а затем обслуживается
+        assertThat(max(bounded)).isLessThan(PENDING_ACQUIRE_TIMEOUT.toMillis() + 4 * SERVICE_TIME.toMillis());
+        assertThat(max(bounded)).isLessThan(max(unbounded) / 2);
+    }
+
+    private PythonApiConfig pool(int maxConnections, int pendingAcquireMaxCount, Duration pendingAcquireTimeout) {
+        PythonApiConfig apiConfig = new PythonApiConfig();
+        apiConfig.setUrl("http://localhost:" + server.port());
+        apiConfig.getPool().setMaxConnections(maxConnections);
+        apiConfig.getPool().setPendingAcquireMaxCount(pendingAcquireMaxCount);
+        apiConfig.getPool().setPendingAcquireTimeout(pendingAcquireTimeout);
+        return apiConfig;
+    }
+
+    /**
+     * Задержки всех запросов, и успешных, и отклонённых пулом, в миллисекундах.
+     */
+    private List<Long> latencies(PythonApiConfig apiConfig) {
+        if (connectionProvider != null) {
+            connectionProvider.disposeLater().block(Duration.ofSeconds(5));
+        }
+        WebClientConfig config = new WebClientConfig();
+        connectionProvider = config.pythonApiConnectionProvider(apiConfig);
+        WebClient webClient = config.webClient(config.pythonApiHttpClient(connectionProvider, apiConfig),
+                apiConfig, new ObjectMapper());
+
+        return Flux.range(0, REQUESTS)
+                .flatMap(i -> Mono.defer(() -> {
+                    long startedAt = System.nanoTime();
+                    return webClient.post()
+                            .uri(apiConfig.getUrl() + "/query")
+                            .bodyValue("{\"query\":\"q" + i + "\"}")
+                            .retrieve()
+                            .bodyToMono(String.class)
+                            .then(Mono.just(0))
+                            .onErrorReturn(0)
+                            .map(ignored -> Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+                }), REQUESTS)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+    }
+
+    private static long max(List<Long> latencies) {
+        return latencies.stream().mapToLong(Long::longValue).max().orElseThrow();
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.architecture.telegrambot.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryResponseDeserializerTest {
+
+    private static final String FULL_RESPONSE = """
+            {"answer": "Люк Скайуокер - джедай", "reasoning": "Найдено 2 фрагмента",
+             "chunks_count": 2, "unknown": {"nested": [1, 2]},
+             "chunks": [{"text": "Люк Скайуокер...", "source": "luke.txt", "distance": 0.2},
+                        {"text": "Сын Энакина...", "source": "anakin.txt", "distance": 0.3}]}
+            """;
+
+    @Test
+    void skipsFieldsThatWereNotRequested() throws Exception {
+        QueryResponse response = mapper(false, false).readValue(FULL_RESPONSE, QueryResponse.class);
+
+        assertThat(response.getAnswer()).isEqualTo("Люк Скайуокер - джедай");
+        assertThat(response.getChunksCount()).isEqualTo(2);
+        assertThat(response.getReasoning()).isNull();
+        assertThat(response.getChunks()).isNull();
+    }
+
+    @Test
+    void readsRequestedFields() throws Exception {
+        QueryResponse response = mapper(true, true).readValue(FULL_RESPONSE, QueryResponse.class);
+
+        assertThat(response.getReasoning()).isEqualTo("Найдено 2 фрагмента");
+        assertThat(response.getChunks()).extracting(QueryResponse.ChunkInfo::getSource)
+                .containsExactly("luke.txt", "anakin.txt");
+    }
+
+    @Test
+    void readsProjectedResponse() throws Exception {
+        QueryResponse response = mapper(false, false)
+                .readValue("{\"answer\": \"Ответ\", \"chunks_count\": 3, \"reasoning\": null}", QueryResponse.class);
+
+        assertThat(response.getAnswer()).isEqualTo("Ответ");
+        assertThat(response.getChunksCount()).isEqualTo(3);
+    }
+
+    private static ObjectMapper mapper(boolean includeChunks, boolean includeReasoning) {
+        return new ObjectMapper().registerModule(new SimpleModule()
+                .addDeserializer(QueryResponse.class, new QueryResponseDeserializer(includeChunks, includeReasoning)));
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.architecture.telegrambot.config.AdmissionConfig;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControllerTest {
+
+    private AdmissionConfig config;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        config = new AdmissionConfig();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void rejectsWhenMaxPendingIsReached() {
+        config.setMaxPending(2);
+        AdmissionController controller = controller();
+
+        assertThat(controller.tryAcquire(1L)).isNotNull();
+        assertThat(controller.tryAcquire(2L)).isNotNull();
+
+        assertThat(controller.tryAcquire(3L)).isNull();
+        assertThat(rejected("queue_full")).isEqualTo(1);
+        assertThat(gauge("telegram.admission.pending")).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsWhenChatLimitIsReached() {
+        config.setMaxInFlightPerChat(2);
+        AdmissionController controller = controller();
+
+        assertThat(controller.tryAcquire(1L)).isNotNull();
+        assertThat(controller.tryAcquire(1L)).isNotNull();
+
+        assertThat(controller.tryAcquire(1L)).isNull();
+        // Лимит одного чата не мешает другим
+        assertThat(controller.tryAcquire(2L)).isNotNull();
+        assertThat(rejected("chat_limit")).isEqualTo(1);
+        // Отклонённый по лимиту чата запрос не занимает общий лимит
+        assertThat(gauge("telegram.admission.pending")).isEqualTo(3);
+    }
+
+    @Test
+    void releasedPermitIsReturned() {
+        config.setMaxPending(1);
+        config.setMaxInFlightPerChat(1);
+        AdmissionController controller = controller();
+
+        AdmissionController.Permit permit = controller.tryAcquire(1L);
+        assertThat(controller.tryAcquire(1L)).isNull();
+
+        permit.release();
+        // Повторное освобождение не возвращает разрешение дважды
+        permit.release();
+
+        assertThat(gauge("telegram.admission.pending")).isZero();
+        assertThat(controller.tryAcquire(1L)).isNotNull();
+        assertThat(controller.tryAcquire(2L)).isNull();
+    }
+
+    @Test
+    void metricsTrackQueueAndWait() {
+        AdmissionController controller = controller();
+
+        AdmissionController.Permit first = controller.tryAcquire(1L);
+        AdmissionController.Permit second = controller.tryAcquire(2L);
+        assertThat(gauge("telegram.admission.queue.size")).isEqualTo(2);
+        assertThat(gauge("telegram.admission.pending")).isEqualTo(2);
+
+        first.start();
+        first.start();
+        assertThat(gauge("telegram.admission.queue.size")).isEqualTo(1);
+        assertThat(meterRegistry.get("telegram.admission.wait").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("telegram.admission.wait").timer().totalTime(TimeUnit.NANOSECONDS))
+                .isPositive();
+
+        // Запрос, освобождённый без начала обработки, тоже покидает очередь
+        second.release();
+        first.release();
+        assertThat(gauge("telegram.admission.queue.size")).isZero();
+        assertThat(gauge("telegram.admission.pending")).isZero();
+        assertThat(meterRegistry.get("telegram.admission.wait").timer().count()).isEqualTo(1);
+    }
+
+    private AdmissionController controller() {
+        return new AdmissionController(config, meterRegistry);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("telegram.admission.rejected").tag("reason", reason).counter().count();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.DomainSocketAddress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BackendClientsTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger tcpRequests = new AtomicInteger();
+    private DisposableServer tcpServer;
+    private DisposableServer socketServer;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(Epoll.isAvailable(), "Нативный транспорт epoll недоступен");
+        tcpServer = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> {
+                    tcpRequests.incrementAndGet();
+                    return response.sendString(Mono.just("tcp"));
+                })
+                .bindNow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (tcpServer != null) {
+            tcpServer.disposeNow();
+        }
+        if (socketServer != null) {
+            socketServer.disposeNow();
+        }
+    }
+
+    @Test
+    void missingSocketFallsBackToTcp() {
+        BackendClients clients = clients(tempDir.resolve("missing.sock"));
+
+        assertThat(call(clients).block(TIMEOUT)).isEqualTo("tcp");
+        assertThat(tcpRequests).hasValue(1);
+    }
+
+    @Test
+    void failureAfterConnectIsNotRetriedOverTcp() {
+        Path socket = tempDir.resolve("api.sock");
+        // Реплика принимает запрос и обрывает соединение, не ответив
+        socketServer = HttpServer.create()
+                .bindAddress(() -> new DomainSocketAddress(socket.toString()))
+                .handle((request, response) -> request.receive().then()
+                        .then(Mono.fromRunnable(() -> request.withConnection(c -> c.channel().close()))))
+                .bindNow();
+        BackendClients clients = clients(socket);
+
+        assertThatThrownBy(() -> call(clients).block(TIMEOUT)).isNotNull();
+        assertThat(tcpRequests).hasValue(0);
+    }
+
+    private BackendClients clients(Path socket) {
+        PythonApiConfig config = new PythonApiConfig();
+        config.setUrl("http://localhost:" + tcpServer.port());
+        config.setUnixSocket(socket.toString());
+        HttpClient httpClient = HttpClient.create();
+        WebClient webClient = WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+        return new BackendClients(config, webClient, httpClient);
+    }
+
+    private Mono<String> call(BackendClients clients) {
+        return clients.execute("http://localhost:" + tcpServer.port(), client -> client.post()
+                .uri("/query")
+                .bodyValue("{}")
+                .retrieve()
+                .bodyToMono(String.class));
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import ru.yandex.architecture.telegrambot.config.CircuitBreakerConfig;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+import ru.yandex.architecture.telegrambot.config.TimerConfig;
+
+import java.net.ConnectException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BackendPoolTest {
+
+    private static final String FIRST = "http://localhost:8001";
+    private static final String SECOND = "http://localhost:8002";
+    private static final String THIRD = "http://localhost:8003";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TimerWheel timerWheel = new TimerWheel(new TimerConfig(), meterRegistry);
+    private HealthMonitor healthMonitor;
+
+    @AfterEach
+    void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Test
+    void selectPrefersLessLoadedOfTwoRandomReplicas() {
+        BackendPool pool = pool(FIRST, SECOND, THIRD);
+        BackendPool.Backend busy = backend(pool, FIRST);
+        for (int i = 0; i < 5; i++) {
+            busy.acquire();
+        }
+
+        // Любая пара случайных реплик содержит хотя бы одну свободную
+        Set<String> selected = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            selected.add(pool.select().getUrl());
+        }
+
+        assertThat(selected).containsExactlyInAnyOrder(SECOND, THIRD);
+        assertThat(meterRegistry.get("python.api.backend.outstanding").tag("backend", FIRST).gauge().value())
+                .isEqualTo(5);
+    }
+
+    @Test
+    void selectSkipsUnhealthyReplicas() {
+        BackendPool pool = pool(FIRST, SECOND);
+        backend(pool, FIRST).acquire();
+        healthMonitor.reportFailure(SECOND, new ConnectException("Connection refused"));
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(pool.select().getUrl()).isEqualTo(FIRST);
+        }
+    }
+
+    @Test
+    void selectFallsBackToAllReplicasWhenNoneIsHealthy() {
+        BackendPool pool = pool(FIRST, SECOND);
+        backend(pool, FIRST).acquire();
+        healthMonitor.reportFailure(FIRST, new ConnectException("Connection refused"));
+        healthMonitor.reportFailure(SECOND, new ConnectException("Connection refused"));
+
+        assertThat(pool.select().getUrl()).isEqualTo(SECOND);
+    }
+
+    @Test
+    void selectOtherReturnsNullForSingleReplica() {
+        BackendPool pool = pool(FIRST);
+
+        assertThat(pool.selectOther(pool.select())).isNull();
+    }
+
+    @Test
+    void selectOtherPrefersHealthyLessLoadedReplica() {
+        BackendPool pool = pool(FIRST, SECOND, THIRD);
+        backend(pool, SECOND).acquire();
+
+        assertThat(pool.selectOther(backend(pool, FIRST)).getUrl()).isEqualTo(THIRD);
+
+        healthMonitor.reportFailure(THIRD, new ConnectException("Connection refused"));
+
+        assertThat(pool.selectOther(backend(pool, FIRST)).getUrl()).isEqualTo(SECOND);
+    }
+
+    private BackendPool pool(String... urls) {
+        PythonApiConfig config = new PythonApiConfig();
+        config.setUrls(List.of(urls));
+        HttpClient httpClient = HttpClient.create();
+        BackendClients backendClients = new BackendClients(config, WebClient.create(), httpClient);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(new CircuitBreakerConfig(), meterRegistry);
+        // Фоновая проверка не запускается: состояние реплик задаёт тест через reportFailure
+        healthMonitor = new HealthMonitor(config, backendClients, new IndexVersionTracker(config, new ObjectMapper()),
+                circuitBreaker, timerWheel, meterRegistry);
+        return new BackendPool(config, healthMonitor, meterRegistry);
+    }
+
+    private static BackendPool.Backend backend(BackendPool pool, String url) {
+        return pool.getBackends().stream().filter(b -> b.getUrl().equals(url)).findFirst().orElseThrow();
+    }
+}
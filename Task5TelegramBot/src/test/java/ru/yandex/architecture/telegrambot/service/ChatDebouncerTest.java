@@ -0,0 +1,183 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import ru.yandex.architecture.telegrambot.config.DebounceConfig;
+import ru.yandex.architecture.telegrambot.config.TimerConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatDebouncerTest {
+
+    private static final Long CHAT = 1L;
+
+    private DebounceConfig config;
+    private MeterRegistry meterRegistry;
+    private ManualTimerWheel timerWheel;
+    private ChatQueries chatQueries;
+    private final List<List<ChatQueries.Fragment>> submitted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        config = new DebounceConfig();
+        config.setEnabled(true);
+        meterRegistry = new SimpleMeterRegistry();
+        timerWheel = new ManualTimerWheel(meterRegistry);
+        chatQueries = new ChatQueries(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Test
+    void fragmentsWithinQuietWindowAreMerged() {
+        ChatDebouncer debouncer = debouncer();
+
+        debouncer.offer(CHAT, fragment(10, "Кто такой"), submitted::add);
+        debouncer.offer(CHAT, fragment(11, "Люк Скайуокер?"), submitted::add);
+        assertThat(submitted).isEmpty();
+
+        timerWheel.fireLast();
+
+        assertThat(submitted).containsExactly(List.of(fragment(10, "Кто такой"), fragment(11, "Люк Скайуокер?")));
+        assertThat(meterRegistry.get("telegram.debounce.fragments").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("telegram.debounce.queries").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void replacedTimerDoesNotFlushNewerFragments() {
+        ChatDebouncer debouncer = debouncer();
+
+        debouncer.offer(CHAT, fragment(10, "Кто такой"), submitted::add);
+        debouncer.offer(CHAT, fragment(11, "Люк Скайуокер?"), submitted::add);
+
+        // Первый таймер сработал одновременно со вторым сообщением и не успел отмениться
+        timerWheel.fire(0);
+        assertThat(submitted).isEmpty();
+
+        timerWheel.fire(1);
+        assertThat(submitted).hasSize(1);
+        assertThat(submitted.get(0)).hasSize(2);
+    }
+
+    @Test
+    void questionIsSentAfterMaxWaitEvenIfUserKeepsTyping() throws InterruptedException {
+        config.setMaxWait(Duration.ofMillis(50));
+        config.setQuietWindow(Duration.ofSeconds(10));
+        ChatDebouncer debouncer = debouncer();
+
+        debouncer.offer(CHAT, fragment(10, "Кто такой"), submitted::add);
+        assertThat(timerWheel.delays.get(0)).isLessThanOrEqualTo(Duration.ofMillis(50));
+
+        Thread.sleep(60);
+        debouncer.offer(CHAT, fragment(11, "Люк Скайуокер?"), submitted::add);
+
+        assertThat(submitted).containsExactly(List.of(fragment(10, "Кто такой"), fragment(11, "Люк Скайуокер?")));
+    }
+
+    @Test
+    void questionIsSentAtMaxFragments() {
+        config.setMaxFragments(3);
+        ChatDebouncer debouncer = debouncer();
+
+        for (int i = 0; i < 3; i++) {
+            debouncer.offer(CHAT, fragment(10 + i, "часть " + i), submitted::add);
+        }
+
+        assertThat(submitted).hasSize(1);
+        assertThat(submitted.get(0)).hasSize(3);
+        // Таймер уже отправленного вопроса ничего не делает
+        timerWheel.fireLast();
+        assertThat(submitted).hasSize(1);
+    }
+
+    @Test
+    void editReplacesPendingFragment() {
+        ChatDebouncer debouncer = debouncer();
+        debouncer.offer(CHAT, fragment(10, "Кто такой Люк?"), submitted::add);
+
+        assertThat(debouncer.edit(CHAT, 10, "Кто такая Лея?")).isTrue();
+        assertThat(debouncer.edit(CHAT, 9, "Кто такой Хан?")).isFalse();
+        timerWheel.fireLast();
+
+        assertThat(submitted).containsExactly(List.of(fragment(10, "Кто такая Лея?")));
+        assertThat(debouncer.edit(CHAT, 10, "Кто такой Хан?")).isFalse();
+    }
+
+    @Test
+    void discardDropsPendingFragments() {
+        ChatDebouncer debouncer = debouncer();
+        debouncer.offer(CHAT, fragment(10, "Кто такой Люк?"), submitted::add);
+
+        assertThat(debouncer.discard(CHAT)).isTrue();
+        assertThat(timerWheel.timers.get(0).isDisposed()).isTrue();
+        timerWheel.fireLast();
+
+        assertThat(submitted).isEmpty();
+        assertThat(debouncer.discard(CHAT)).isFalse();
+    }
+
+    @Test
+    void recentInFlightQueryIsMergedIntoNewQuestion() {
+        ChatQueries.Query inFlight = chatQueries.newQuery(List.of(fragment(10, "Кто такой")));
+        chatQueries.start(CHAT, inFlight);
+        ChatDebouncer debouncer = debouncer();
+
+        debouncer.offer(CHAT, fragment(11, "Люк Скайуокер?"), submitted::add);
+        timerWheel.fireLast();
+
+        assertThat(inFlight.cancellation().isCancelled()).isTrue();
+        assertThat(submitted).containsExactly(List.of(fragment(10, "Кто такой"), fragment(11, "Люк Скайуокер?")));
+        assertThat(meterRegistry.get("telegram.debounce.cancelled").counter().count()).isEqualTo(1);
+    }
+
+    private ChatDebouncer debouncer() {
+        return new ChatDebouncer(config, timerWheel, chatQueries, meterRegistry);
+    }
+
+    private static ChatQueries.Fragment fragment(int messageId, String text) {
+        return new ChatQueries.Fragment(messageId, text);
+    }
+
+    /**
+     * Колесо, таймеры которого срабатывают только по команде теста, в том числе уже отменённые.
+     */
+    private static final class ManualTimerWheel extends TimerWheel {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+        private final List<Duration> delays = new ArrayList<>();
+        private final List<Disposable> timers = new ArrayList<>();
+
+        ManualTimerWheel(MeterRegistry meterRegistry) {
+            super(new TimerConfig(), meterRegistry);
+        }
+
+        @Override
+        public Disposable schedule(Duration delay, Runnable task) {
+            Disposable timer = Disposables.single();
+            tasks.add(task);
+            delays.add(delay);
+            timers.add(timer);
+            return timer;
+        }
+
+        void fire(int index) {
+            tasks.get(index).run();
+        }
+
+        void fireLast() {
+            fire(tasks.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatQueriesTest {
+
+    private static final Long CHAT = 1L;
+
+    private final ChatQueries chatQueries = new ChatQueries(new SimpleMeterRegistry());
+
+    @Test
+    void acceptedQuerySupersedesPrevious() {
+        ChatQueries.Query first = start(new ChatQueries.Fragment(10, "Who is Luke?"));
+        ChatQueries.Query second = chatQueries.newQuery(List.of(new ChatQueries.Fragment(11, "Who is Leia?")));
+
+        assertThat(first.cancellation().isCancelled()).isFalse();
+
+        chatQueries.start(CHAT, second);
+
+        assertThat(first.cancellation().isCancelled()).isTrue();
+        assertThat(second.cancellation().isCancelled()).isFalse();
+    }
+
+    @Test
+    void queryFinishedBeforeStartIsNotRegistered() {
+        ChatQueries.Query query = chatQueries.newQuery(List.of(new ChatQueries.Fragment(10, "Who is Luke?")));
+        chatQueries.finished(CHAT, query);
+        chatQueries.start(CHAT, query);
+
+        assertThat(chatQueries.cancel(CHAT)).isFalse();
+    }
+
+    @Test
+    void editReplacesFragmentOfMergedQuestion() {
+        start(new ChatQueries.Fragment(10, "Who is"), new ChatQueries.Fragment(11, "Luke?"));
+
+        List<ChatQueries.Fragment> edited = chatQueries.edit(CHAT, 11, "Leia?");
+
+        assertThat(chatQueries.newQuery(edited).text()).isEqualTo("Who is Leia?");
+        assertThat(chatQueries.edit(CHAT, 9, "Han?")).isNull();
+    }
+
+    @Test
+    void recentQueryIsCancelledForMerge() {
+        ChatQueries.Query query = start(new ChatQueries.Fragment(10, "Who is"));
+
+        List<ChatQueries.Fragment> fragments = chatQueries.cancelRecent(CHAT, Duration.ofSeconds(5));
+
+        assertThat(fragments).containsExactly(new ChatQueries.Fragment(10, "Who is"));
+        assertThat(query.cancellation().isCancelled()).isTrue();
+        assertThat(chatQueries.cancel(CHAT)).isFalse();
+    }
+
+    private ChatQueries.Query start(ChatQueries.Fragment... fragments) {
+        ChatQueries.Query query = chatQueries.newQuery(List.of(fragments));
+        chatQueries.start(CHAT, query);
+        return query;
+    }
+}
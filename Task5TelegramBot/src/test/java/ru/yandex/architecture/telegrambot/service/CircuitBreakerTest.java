@@ -0,0 +1,68 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import ru.yandex.architecture.telegrambot.config.CircuitBreakerConfig;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        circuitBreaker = new CircuitBreaker(config, new SimpleMeterRegistry());
+        circuitBreaker.registerMetrics();
+    }
+
+    @Test
+    void clientErrorsAndExpiredDeadlinesDoNotOpen() {
+        for (int i = 0; i < 10; i++) {
+            fail(response(400));
+            fail(response(499));
+            fail(response(504));
+            fail(new TimeoutException("Срок обработки запроса истёк"));
+            fail(new ConcurrencyLimiter.LimitExceededException("Очередь переполнена"));
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void serverErrorsOpen() {
+        fail(response(500));
+        fail(response(503));
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(new WebClientRequestException(new ConnectException("Connection refused"), HttpMethod.POST,
+                URI.create("http://localhost:8000/query"), HttpHeaders.EMPTY));
+        fail(new PythonApiClient.BackendTimeoutException("Python API не ответил в срок вызова"));
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void fail(Throwable error) {
+        circuitBreaker.execute(() -> Mono.error(error), PythonApiClient::isBackendFailure)
+                .onErrorResume(e -> Mono.empty())
+                .block();
+    }
+
+    private static WebClientResponseException response(int status) {
+        return WebClientResponseException.create(status, "", HttpHeaders.EMPTY, new byte[0], null);
+    }
+}
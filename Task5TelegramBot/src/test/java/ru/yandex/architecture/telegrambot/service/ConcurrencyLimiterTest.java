@@ -0,0 +1,76 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.yandex.architecture.telegrambot.config.LimiterConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimiterTest {
+
+    private ConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        LimiterConfig config = new LimiterConfig();
+        config.setInitialLimit(1);
+        config.setMinLimit(1);
+        config.setMaxQueue(2);
+        limiter = new ConcurrencyLimiter(config, new SimpleMeterRegistry());
+        limiter.registerMetrics();
+    }
+
+    @Test
+    void queuedCallsRunInArrivalOrder() {
+        List<String> started = new ArrayList<>();
+        Sinks.One<String> first = Sinks.one();
+        limiter.execute(() -> record(started, "first", first.asMono())).subscribe();
+        limiter.execute(() -> record(started, "second", Mono.just("second"))).subscribe();
+        limiter.execute(() -> record(started, "third", Mono.just("third"))).subscribe();
+
+        assertThat(started).containsExactly("first");
+
+        first.tryEmitValue("first");
+
+        assertThat(started).containsExactly("first", "second", "third");
+    }
+
+    @Test
+    void callsBeyondQueueAreShed() {
+        limiter.execute(Mono::never).subscribe();
+        limiter.execute(Mono::never).subscribe();
+        limiter.execute(Mono::never).subscribe();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        limiter.execute(Mono::never).subscribe(value -> {
+        }, error::set);
+
+        assertThat(error.get()).isInstanceOf(ConcurrencyLimiter.LimitExceededException.class);
+    }
+
+    @Test
+    void cancelledCallReleasesItsSlot() {
+        Disposable running = limiter.execute(Mono::never).subscribe();
+        Disposable queued = limiter.execute(Mono::never).subscribe();
+
+        queued.dispose();
+        running.dispose();
+
+        assertThat(limiter.execute(() -> Mono.just("next")).block()).isEqualTo("next");
+    }
+
+    private static Mono<String> record(List<String> started, String name, Mono<String> call) {
+        return Mono.defer(() -> {
+            started.add(name);
+            return call;
+        });
+    }
+}
@@ -0,0 +1,158 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import ru.yandex.architecture.telegrambot.config.CircuitBreakerConfig;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+import ru.yandex.architecture.telegrambot.config.TimerConfig;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class HealthMonitorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private MeterRegistry meterRegistry;
+    private TimerWheel timerWheel;
+    private Replica first;
+    private Replica second;
+    private PythonApiConfig config;
+    private IndexVersionTracker indexVersionTracker;
+    private CircuitBreaker circuitBreaker;
+    private HealthMonitor healthMonitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        timerWheel = new TimerWheel(new TimerConfig(), meterRegistry);
+        first = new Replica();
+        second = new Replica();
+        config = new PythonApiConfig();
+        config.setUrls(List.of(first.url(), second.url()));
+        config.setHealthCheckInterval(Duration.ofMillis(50));
+        config.setHealthCheckTimeout(Duration.ofSeconds(1));
+        indexVersionTracker = new IndexVersionTracker(config, new ObjectMapper());
+        CircuitBreakerConfig breakerConfig = new CircuitBreakerConfig();
+        breakerConfig.setWindowSize(2);
+        breakerConfig.setMinimumCalls(2);
+        circuitBreaker = new CircuitBreaker(breakerConfig, meterRegistry);
+        circuitBreaker.registerMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (healthMonitor != null) {
+            healthMonitor.stop();
+        }
+        timerWheel.stop();
+        first.server.disposeNow();
+        second.server.disposeNow();
+    }
+
+    @Test
+    void snapshotFollowsProbes() {
+        first.version.set("v1");
+        second.status.set(503);
+        healthMonitor = start();
+
+        await().atMost(TIMEOUT).until(() -> !healthMonitor.snapshot().isHealthy(second.url()));
+        HealthMonitor.BackendStatus status = healthMonitor.snapshot().backends().get(first.url());
+        assertThat(status.healthy()).isTrue();
+        assertThat(status.latency()).isNotNull();
+        assertThat(healthMonitor.snapshot().backends().get(second.url()).lastError()).contains("503");
+        // Недоступная реплика не участвует в согласовании версии индекса
+        assertThat(indexVersionTracker.currentVersion()).isEqualTo("v1");
+        assertThat(meterRegistry.get("python.api.backend.healthy").tag("backend", second.url()).gauge().value())
+                .isZero();
+
+        second.version.set("v1");
+        second.status.set(200);
+
+        await().atMost(TIMEOUT).until(() -> healthMonitor.snapshot().isHealthy(second.url()));
+        first.version.set("v2");
+        second.version.set("v2");
+        await().atMost(TIMEOUT).until(() -> "v2".equals(indexVersionTracker.currentVersion()));
+    }
+
+    @Test
+    void reportedFailureExcludesReplicaUntilNextProbe() {
+        config.setHealthCheckInterval(Duration.ofSeconds(1));
+        healthMonitor = start();
+        await().atMost(TIMEOUT).until(() -> healthMonitor.snapshot().backends().get(first.url()).checkedAt() != null);
+        Duration latency = healthMonitor.snapshot().backends().get(first.url()).latency();
+
+        healthMonitor.reportFailure(first.url(), new ConnectException("Connection refused"));
+
+        HealthMonitor.BackendStatus status = healthMonitor.snapshot().backends().get(first.url());
+        assertThat(status.healthy()).isFalse();
+        assertThat(status.lastError()).isEqualTo("Connection refused");
+        // Задержка последней проверки сохраняется до следующей проверки
+        assertThat(status.latency()).isNotNull().isEqualTo(latency);
+        assertThat(healthMonitor.snapshot().anyHealthy()).isTrue();
+
+        await().atMost(TIMEOUT).until(() -> healthMonitor.snapshot().isHealthy(first.url()));
+    }
+
+    @Test
+    void passedProbeMovesOpenBreakerToHalfOpen() {
+        for (int i = 0; i < 2; i++) {
+            circuitBreaker.execute(() -> Mono.error(WebClientResponseException.create(500, "", HttpHeaders.EMPTY,
+                            new byte[0], null)), PythonApiClient::isBackendFailure)
+                    .onErrorResume(e -> Mono.empty())
+                    .block();
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        healthMonitor = start();
+
+        await().atMost(TIMEOUT).until(() -> circuitBreaker.getState() == CircuitBreaker.State.HALF_OPEN);
+    }
+
+    private HealthMonitor start() {
+        HttpClient httpClient = HttpClient.create();
+        BackendClients backendClients = new BackendClients(config, WebClient.create(), httpClient);
+        HealthMonitor monitor = new HealthMonitor(config, backendClients, indexVersionTracker, circuitBreaker,
+                timerWheel, meterRegistry);
+        monitor.start();
+        return monitor;
+    }
+
+    /**
+     * Поддельная реплика Python API, ответ /health которой задаёт тест.
+     */
+    private static final class Replica {
+
+        private final AtomicInteger status = new AtomicInteger(200);
+        private final AtomicReference<String> version = new AtomicReference<>("test");
+        private final DisposableServer server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/health", (request, response) -> response
+                        .status(status.get())
+                        .header("Content-Type", "application/json")
+                        .sendString(Mono.fromSupplier(() ->
+                                "{\"status\":\"healthy\",\"index_version\":\"" + version.get() + "\"}"))))
+                .bindNow();
+
+        String url() {
+            return "http://localhost:" + server.port();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.architecture.telegrambot.config.HedgingConfig;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgingPolicyTest {
+
+    private HedgingConfig config;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        config = new HedgingConfig();
+        config.setEnabled(true);
+        config.setMinDelay(Duration.ofMillis(1));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void budgetAllowsOneHedgePerTenRequests() {
+        config.setBudgetPercent(10);
+        HedgingPolicy policy = policy();
+
+        for (int i = 0; i < 9; i++) {
+            policy.onRequest();
+            assertThat(policy.tryAcquireHedge()).isFalse();
+        }
+        policy.onRequest();
+
+        assertThat(policy.tryAcquireHedge()).isTrue();
+        assertThat(policy.tryAcquireHedge()).isFalse();
+        assertThat(meterRegistry.get("python.api.hedging.hedges").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void budgetDoesNotAccumulateWithoutBound() {
+        config.setBudgetPercent(100);
+        HedgingPolicy policy = policy();
+
+        for (int i = 0; i < 1000; i++) {
+            policy.onRequest();
+        }
+
+        // После долгого затишья всплеск дублей ограничен запасом в 10 токенов
+        int hedges = 0;
+        while (policy.tryAcquireHedge()) {
+            hedges++;
+        }
+        assertThat(hedges).isEqualTo(10);
+    }
+
+    @Test
+    void delayFollowsPercentileOfRecentLatencies() {
+        config.setPercentile(0.5);
+        HedgingPolicy policy = policy();
+
+        assertThat(policy.hedgeDelay()).isEqualTo(Duration.ofMillis(1));
+        for (int i = 1; i <= 64; i++) {
+            policy.recordLatency(Duration.ofMillis(i).toNanos());
+        }
+
+        assertThat(policy.hedgeDelay()).isEqualTo(Duration.ofMillis(33));
+    }
+
+    @Test
+    void reservoirKeepsOnlyRecentLatencies() {
+        config.setPercentile(0.99);
+        HedgingPolicy policy = policy();
+
+        for (int i = 0; i < 512; i++) {
+            policy.recordLatency(Duration.ofSeconds(10).toNanos());
+        }
+        assertThat(policy.hedgeDelay()).isEqualTo(Duration.ofSeconds(10));
+
+        for (int i = 0; i < 512; i++) {
+            policy.recordLatency(Duration.ofMillis(50).toNanos());
+        }
+        assertThat(policy.hedgeDelay()).isEqualTo(Duration.ofMillis(50));
+    }
+
+    private HedgingPolicy policy() {
+        HedgingPolicy policy = new HedgingPolicy(config, meterRegistry);
+        policy.registerMetrics();
+        return policy;
+    }
+}
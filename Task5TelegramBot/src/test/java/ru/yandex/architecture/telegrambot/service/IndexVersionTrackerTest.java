@@ -0,0 +1,69 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.architecture.telegrambot.config.PythonApiConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexVersionTrackerTest {
+
+    private static final String FIRST = "http://localhost:8001";
+    private static final String SECOND = "http://localhost:8002";
+
+    private IndexVersionTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new IndexVersionTracker(new PythonApiConfig(), new ObjectMapper());
+        tracker.start();
+    }
+
+    @Test
+    void versionIsUnknownUntilReported() {
+        assertThat(tracker.currentVersion()).isNull();
+
+        tracker.update(FIRST, null);
+
+        assertThat(tracker.currentVersion()).isNull();
+    }
+
+    @Test
+    void disagreeingReplicasKeepPreviousVersion() {
+        tracker.update(FIRST, "v1");
+        tracker.update(SECOND, "v1");
+        assertThat(tracker.currentVersion()).isEqualTo("v1");
+
+        // Поэтапная переиндексация: реплики по очереди отвечают разными версиями
+        for (int probe = 0; probe < 5; probe++) {
+            tracker.update(FIRST, "v2");
+            tracker.update(SECOND, "v1");
+            assertThat(tracker.currentVersion()).isEqualTo("v1");
+        }
+
+        tracker.update(SECOND, "v2");
+        assertThat(tracker.currentVersion()).isEqualTo("v2");
+    }
+
+    @Test
+    void unavailableReplicaDoesNotHoldVersion() {
+        tracker.update(FIRST, "v1");
+        tracker.update(SECOND, "v1");
+        tracker.update(FIRST, "v2");
+        assertThat(tracker.currentVersion()).isEqualTo("v1");
+
+        tracker.forget(SECOND);
+
+        assertThat(tracker.currentVersion()).isEqualTo("v2");
+    }
+
+    @Test
+    void lastForgottenReplicaKeepsKnownVersion() {
+        tracker.update(FIRST, "v1");
+
+        tracker.forget(FIRST);
+
+        assertThat(tracker.currentVersion()).isEqualTo("v1");
+    }
+}
@@ -0,0 +1,104 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Дублирующий запрос между двумя поддельными репликами Python API: первая получившая запрос
+ * реплика зависает, дубль уходит на другую, а проигравший запрос отменяется.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PythonApiClientHedgingTest {
+
+    private static final String TOKEN = "123:test";
+
+    // Запросы /query обеих реплик: первый зависает, остальные отвечают сразу
+    private static final AtomicInteger QUERIES = new AtomicInteger();
+    private static final CountDownLatch LOSER_CANCELLED = new CountDownLatch(1);
+
+    private static final DisposableServer TELEGRAM = HttpServer.create()
+            .port(0)
+            .route(routes -> routes.post("/bot" + TOKEN + "/{method}", (request, response) -> request.receive()
+                    .then()
+                    .then(response.header("Content-Type", "application/json")
+                            .sendString(Mono.just("{\"ok\":true,\"result\":true}"))
+                            .then())))
+            .bindNow();
+
+    private static final DisposableServer FIRST_REPLICA = replica();
+    private static final DisposableServer SECOND_REPLICA = replica();
+
+    @Autowired
+    private PythonApiClient pythonApiClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("telegram.bot.token", () -> TOKEN);
+        registry.add("telegram.bot.username", () -> "test_bot");
+        registry.add("telegram.bot.api-url", () -> "http://localhost:" + TELEGRAM.port() + "/bot");
+        registry.add("telegram.bot.webhook.enabled", () -> "true");
+        registry.add("telegram.bot.webhook.url", () -> "https://bot.example.com");
+        registry.add("telegram.bot.webhook.secret-token", () -> "webhook-secret");
+        registry.add("python.api.urls", () -> "http://localhost:" + FIRST_REPLICA.port()
+                + ",http://localhost:" + SECOND_REPLICA.port());
+        registry.add("python.api.cache.disk.enabled", () -> "false");
+        registry.add("python.api.hedging.enabled", () -> "true");
+        registry.add("python.api.hedging.min-delay", () -> "100ms");
+        registry.add("python.api.hedging.budget-percent", () -> "100");
+    }
+
+    @AfterAll
+    static void stopServers() {
+        TELEGRAM.disposeNow();
+        FIRST_REPLICA.disposeNow();
+        SECOND_REPLICA.disposeNow();
+    }
+
+    @Test
+    void hedgeWinsAndLoserIsCancelled() throws InterruptedException {
+        QueryResponse response = pythonApiClient.queryAsync("Кто такой Люк Скайуокер?",
+                pythonApiClient.newDeadline()).block(Duration.ofSeconds(5));
+
+        assertThat(response).isNotNull();
+        assertThat(response.getAnswer()).isEqualTo("Быстрый ответ");
+        assertThat(QUERIES).hasValue(2);
+        assertThat(LOSER_CANCELLED.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("python.api.hedging.wins").counter().count()).isEqualTo(1);
+    }
+
+    private static DisposableServer replica() {
+        return HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/health", (request, response) -> response.header("Content-Type", "application/json")
+                                .sendString(Mono.just("{\"status\":\"healthy\",\"index_version\":\"test\"}")))
+                        .post("/query", (request, response) -> request.receive().then().then(Mono.defer(() -> {
+                            Mono<String> answer = QUERIES.incrementAndGet() == 1
+                                    ? Mono.delay(Duration.ofSeconds(10))
+                                            .map(tick -> "{\"answer\":\"Медленный ответ\",\"chunks_count\":1}")
+                                            .doOnCancel(LOSER_CANCELLED::countDown)
+                                    : Mono.just("{\"answer\":\"Быстрый ответ\",\"chunks_count\":1}");
+                            return response.header("Content-Type", "application/json").sendString(answer).then();
+                        }))))
+                .bindNow();
+    }
+}
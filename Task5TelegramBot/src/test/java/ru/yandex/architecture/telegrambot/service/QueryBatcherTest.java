@@ -0,0 +1,169 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import ru.yandex.architecture.telegrambot.config.BatchingConfig;
+import ru.yandex.architecture.telegrambot.config.TimerConfig;
+import ru.yandex.architecture.telegrambot.dto.Deadline;
+import ru.yandex.architecture.telegrambot.dto.QueryRequest;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class QueryBatcherTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private BatchingConfig config;
+    private MeterRegistry meterRegistry;
+    private TimerWheel timerWheel;
+
+    private final AtomicInteger singleCalls = new AtomicInteger();
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Deadline> batchDeadline = new AtomicReference<>();
+    private final List<Disposable> subscriptions = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        config = new BatchingConfig();
+        config.setEnabled(true);
+        config.setMinInFlight(1);
+        meterRegistry = new SimpleMeterRegistry();
+        timerWheel = new TimerWheel(new TimerConfig(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscriptions.forEach(Disposable::dispose);
+        timerWheel.stop();
+    }
+
+    @Test
+    void queriesWithinWindowAreSentAsOneBatch() {
+        config.setWindow(Duration.ofMillis(50));
+        QueryBatcher batcher = batcher();
+
+        List<AtomicReference<String>> answers = List.of(new AtomicReference<>(), new AtomicReference<>(),
+                new AtomicReference<>());
+        for (int i = 0; i < answers.size(); i++) {
+            AtomicReference<String> answer = answers.get(i);
+            subscriptions.add(execute(batcher, "Вопрос " + i, Deadline.after(TIMEOUT), answering())
+                    .subscribe(response -> answer.set(response.getAnswer())));
+        }
+
+        await().atMost(TIMEOUT).until(() -> answers.stream().allMatch(answer -> answer.get() != null));
+        assertThat(batches).containsExactly(List.of("Вопрос 0", "Вопрос 1", "Вопрос 2"));
+        // Каждый вызывающий получает ответ на свой вопрос
+        assertThat(answers).extracting(AtomicReference::get)
+                .containsExactly("Ответ: Вопрос 0", "Ответ: Вопрос 1", "Ответ: Вопрос 2");
+        assertThat(singleCalls).hasValue(0);
+        assertThat(meterRegistry.get("python.api.batching.size").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForWindow() {
+        config.setWindow(Duration.ofSeconds(10));
+        config.setMaxBatchSize(2);
+        QueryBatcher batcher = batcher();
+
+        for (int i = 0; i < 3; i++) {
+            subscriptions.add(execute(batcher, "Вопрос " + i, Deadline.after(TIMEOUT), answering()).subscribe());
+        }
+
+        assertThat(batches).containsExactly(List.of("Вопрос 0", "Вопрос 1"));
+    }
+
+    @Test
+    void queriesBelowMinInFlightAreSentSingly() {
+        config.setMinInFlight(2);
+        config.setMaxBatchSize(2);
+        QueryBatcher batcher = batcher();
+
+        // Первый запрос выполняется отдельно и остаётся в работе
+        subscriptions.add(execute(batcher, "Вопрос 0", Deadline.after(TIMEOUT), (requests, deadline) -> Mono.never())
+                .subscribe());
+        assertThat(singleCalls).hasValue(1);
+        assertThat(batches).isEmpty();
+
+        // Под нагрузкой следующие запросы собираются в пакет
+        subscriptions.add(execute(batcher, "Вопрос 1", Deadline.after(TIMEOUT), answering()).subscribe());
+        subscriptions.add(execute(batcher, "Вопрос 2", Deadline.after(TIMEOUT), answering()).subscribe());
+
+        assertThat(singleCalls).hasValue(1);
+        assertThat(batches).containsExactly(List.of("Вопрос 1", "Вопрос 2"));
+        // Пакет уже ответил, в работе остался только первый запрос
+        assertThat(meterRegistry.get("python.api.batching.in.flight").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void batchDeadlineIsLatestOfMembers() {
+        config.setMaxBatchSize(3);
+        QueryBatcher batcher = batcher();
+        Deadline latest = Deadline.after(Duration.ofSeconds(5));
+
+        subscriptions.add(execute(batcher, "Вопрос 0", Deadline.after(Duration.ofSeconds(1)), answering())
+                .subscribe());
+        subscriptions.add(execute(batcher, "Вопрос 1", latest, answering()).subscribe());
+        subscriptions.add(execute(batcher, "Вопрос 2", Deadline.after(Duration.ofSeconds(3)), answering())
+                .subscribe());
+
+        assertThat(batchDeadline).hasValue(latest);
+    }
+
+    @Test
+    void batchCallIsCancelledWhenNoCallerWaits() {
+        config.setMaxBatchSize(2);
+        QueryBatcher batcher = batcher();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        BiFunction<List<QueryRequest>, Deadline, Mono<List<QueryResponse>>> hanging =
+                (requests, deadline) -> Mono.<List<QueryResponse>>never().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = execute(batcher, "Вопрос 0", Deadline.after(TIMEOUT), hanging).subscribe();
+        Disposable second = execute(batcher, "Вопрос 1", Deadline.after(TIMEOUT), hanging).subscribe();
+
+        first.dispose();
+        assertThat(cancelled).isFalse();
+        second.dispose();
+        assertThat(cancelled).isTrue();
+    }
+
+    private QueryBatcher batcher() {
+        return new QueryBatcher(config, timerWheel, meterRegistry);
+    }
+
+    private Mono<QueryResponse> execute(QueryBatcher batcher, String query, Deadline deadline,
+                                        BiFunction<List<QueryRequest>, Deadline, Mono<List<QueryResponse>>> batch) {
+        QueryRequest request = new QueryRequest();
+        request.setQuery(query);
+        return batcher.execute(request, deadline, () -> {
+            singleCalls.incrementAndGet();
+            return Mono.never();
+        }, (requests, batchDeadline) -> {
+            batches.add(requests.stream().map(QueryRequest::getQuery).toList());
+            this.batchDeadline.set(batchDeadline);
+            return batch.apply(requests, batchDeadline);
+        });
+    }
+
+    private static BiFunction<List<QueryRequest>, Deadline, Mono<List<QueryResponse>>> answering() {
+        return (requests, deadline) -> Mono.just(requests.stream().map(request -> {
+            QueryResponse response = new QueryResponse();
+            response.setAnswer("Ответ: " + request.getQuery());
+            return response;
+        }).toList());
+    }
+}
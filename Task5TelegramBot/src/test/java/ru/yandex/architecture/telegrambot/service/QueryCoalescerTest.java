@@ -0,0 +1,83 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.yandex.architecture.telegrambot.dto.QueryKey;
+import ru.yandex.architecture.telegrambot.dto.QueryResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryCoalescerTest {
+
+    private static final QueryKey KEY = new QueryKey("Who is Luke Skywalker?", 3);
+
+    private final QueryCoalescer coalescer = new QueryCoalescer(new SimpleMeterRegistry());
+    private final List<Sinks.One<QueryResponse>> calls = new ArrayList<>();
+    private final AtomicInteger cancelledCalls = new AtomicInteger();
+
+    @Test
+    void identicalQueriesShareOneCall() {
+        AtomicReference<QueryResponse> first = new AtomicReference<>();
+        AtomicReference<QueryResponse> second = new AtomicReference<>();
+        coalescer.execute(KEY, call()).subscribe(first::set);
+        coalescer.execute(KEY, call()).subscribe(second::set);
+
+        calls.get(0).tryEmitValue(response("Jedi"));
+
+        assertThat(calls).hasSize(1);
+        assertThat(first.get().getAnswer()).isEqualTo("Jedi");
+        assertThat(second.get()).isSameAs(first.get());
+    }
+
+    @Test
+    void callContinuesWhileAnyWaiterRemains() {
+        Disposable first = coalescer.execute(KEY, call()).subscribe();
+        AtomicReference<QueryResponse> second = new AtomicReference<>();
+        coalescer.execute(KEY, call()).subscribe(second::set);
+
+        first.dispose();
+        calls.get(0).tryEmitValue(response("Jedi"));
+
+        assertThat(cancelledCalls).hasValue(0);
+        assertThat(second.get().getAnswer()).isEqualTo("Jedi");
+    }
+
+    @Test
+    void abandonedCallIsCancelledAndNextQueryStartsNewOne() {
+        Disposable first = coalescer.execute(KEY, call()).subscribe();
+        Disposable second = coalescer.execute(KEY, call()).subscribe();
+        first.dispose();
+        second.dispose();
+
+        AtomicReference<QueryResponse> next = new AtomicReference<>();
+        coalescer.execute(KEY, call()).subscribe(next::set);
+        calls.get(1).tryEmitValue(response("Sith"));
+
+        assertThat(cancelledCalls).hasValue(1);
+        assertThat(calls).hasSize(2);
+        assertThat(next.get().getAnswer()).isEqualTo("Sith");
+    }
+
+    private Supplier<Mono<QueryResponse>> call() {
+        return () -> {
+            Sinks.One<QueryResponse> sink = Sinks.one();
+            calls.add(sink);
+            return sink.asMono().doOnCancel(cancelledCalls::incrementAndGet);
+        };
+    }
+
+    private static QueryResponse response(String answer) {
+        QueryResponse response = new QueryResponse();
+        response.setAnswer(answer);
+        return response;
+    }
+}
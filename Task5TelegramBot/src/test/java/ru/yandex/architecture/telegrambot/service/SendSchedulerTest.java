@@ -0,0 +1,152 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.yandex.architecture.telegrambot.config.SendSchedulerConfig;
+import ru.yandex.architecture.telegrambot.config.TimerConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class SendSchedulerTest {
+
+    private MeterRegistry meterRegistry;
+    private TimerWheel timerWheel;
+    private SendScheduler sendScheduler;
+
+    @BeforeEach
+    void setUp() {
+        SendSchedulerConfig config = new SendSchedulerConfig();
+        config.setChatInterval(Duration.ofMillis(50));
+        config.setGlobalMessagesPerSecond(1000);
+        timerWheel = new TimerWheel(new TimerConfig(), new SimpleMeterRegistry());
+        meterRegistry = new SimpleMeterRegistry();
+        sendScheduler = new SendScheduler(config, timerWheel, meterRegistry);
+        sendScheduler.registerMetrics();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        sendScheduler.shutdown();
+        timerWheel.stop();
+    }
+
+    @Test
+    void retryAfterRateLimitKeepsChatOrder() throws Exception {
+        TelegramApiRequestException tooManyRequests = tooManyRequests(0);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        AtomicInteger firstAttempts = new AtomicInteger();
+
+        CompletableFuture<String> first = sendScheduler.submit("42", SendScheduler.Lane.NORMAL, () -> {
+            if (firstAttempts.incrementAndGet() == 1) {
+                return CompletableFuture.failedFuture(tooManyRequests);
+            }
+            sent.add("first");
+            return CompletableFuture.completedFuture("first");
+        });
+        CompletableFuture<String> second = sendScheduler.submit("42", SendScheduler.Lane.NORMAL, () -> {
+            sent.add("second");
+            return CompletableFuture.completedFuture("second");
+        });
+
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertThat(firstAttempts).hasValue(2);
+        assertThat(sent).containsExactly("first", "second");
+    }
+
+    @Test
+    void rateLimitInSeveralChatsPausesAllChats() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> first = sendScheduler.submit("1", SendScheduler.Lane.NORMAL,
+                failingOnce(tooManyRequests(1), attempts));
+        CompletableFuture<String> second = sendScheduler.submit("2", SendScheduler.Lane.NORMAL,
+                failingOnce(tooManyRequests(1), attempts));
+        await().atMost(Duration.ofSeconds(5)).until(() -> attempts.get() >= 2);
+
+        // Ограничение всего бота: чат, не получавший 429, тоже ждёт retry_after
+        long startedAt = System.nanoTime();
+        sendScheduler.submit("3", SendScheduler.Lane.NORMAL, () -> CompletableFuture.completedFuture("third"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isGreaterThan(500);
+        assertThat(meterRegistry.get("telegram.sender.global.paused").counter().count()).isEqualTo(1);
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void rateLimitInOneChatDoesNotPauseOthers() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> limited = sendScheduler.submit("1", SendScheduler.Lane.NORMAL,
+                failingOnce(tooManyRequests(1), attempts));
+        await().atMost(Duration.ofSeconds(5)).until(() -> attempts.get() >= 1);
+
+        long startedAt = System.nanoTime();
+        sendScheduler.submit("3", SendScheduler.Lane.NORMAL, () -> CompletableFuture.completedFuture("third"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isLessThan(500);
+        assertThat(meterRegistry.get("telegram.sender.global.paused").counter().count()).isZero();
+        limited.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void droppableMessageIsNotRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> edit = sendScheduler.submit("42", SendScheduler.Lane.DROPPABLE,
+                failingOnce(tooManyRequests(0), attempts));
+
+        assertThat(edit).failsWithin(Duration.ofSeconds(5));
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void chatActionDoesNotDelayChatMessages() throws Exception {
+        SendSchedulerConfig config = new SendSchedulerConfig();
+        config.setChatInterval(Duration.ofSeconds(1));
+        SendScheduler scheduler = new SendScheduler(config, timerWheel, new SimpleMeterRegistry());
+        try {
+            scheduler.submitAction("42", () -> CompletableFuture.completedFuture(true)).get(5, TimeUnit.SECONDS);
+
+            // Действие не заняло корзину чата: ответ не ждёт секундного интервала
+            long startedAt = System.nanoTime();
+            scheduler.submit("42", SendScheduler.Lane.NORMAL, () -> CompletableFuture.completedFuture("answer"))
+                    .get(5, TimeUnit.SECONDS);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isLessThan(500);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static Supplier<CompletableFuture<String>> failingOnce(Throwable error, AtomicInteger attempts) {
+        AtomicBoolean failed = new AtomicBoolean();
+        return () -> {
+            attempts.incrementAndGet();
+            return failed.compareAndSet(false, true)
+                    ? CompletableFuture.failedFuture(error)
+                    : CompletableFuture.completedFuture("sent");
+        };
+    }
+
+    private static TelegramApiRequestException tooManyRequests(int retryAfter) throws Exception {
+        ApiResponse<?> response = new ObjectMapper().readValue("""
+                {"ok": false, "error_code": 429, "description": "Too Many Requests: retry after %d",
+                 "parameters": {"retry_after": %d}}
+                """.formatted(retryAfter, retryAfter), ApiResponse.class);
+        return new TelegramApiRequestException("Too Many Requests", response);
+    }
+}
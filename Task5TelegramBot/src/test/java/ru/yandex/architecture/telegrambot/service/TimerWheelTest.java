@@ -0,0 +1,76 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import ru.yandex.architecture.telegrambot.config.TimerConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class TimerWheelTest {
+
+    private MeterRegistry meterRegistry;
+    private TimerWheel timerWheel;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        timerWheel = new TimerWheel(new TimerConfig(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Test
+    void scheduledTaskRuns() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+
+        timerWheel.schedule(Duration.ofMillis(20), fired::countDown);
+
+        assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void cancelledTimeoutsLeaveTheWheel() throws InterruptedException {
+        AtomicInteger fired = new AtomicInteger();
+        List<Disposable> timeouts = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            timeouts.add(timerWheel.schedule(Duration.ofMillis(50), fired::incrementAndGet));
+        }
+
+        timeouts.forEach(Disposable::dispose);
+
+        // Отменённые таймауты снимаются с колеса на ближайшем шаге и не срабатывают
+        await().atMost(Duration.ofSeconds(5)).until(() -> pending() == 0);
+        Thread.sleep(100);
+        assertThat(fired).hasValue(0);
+    }
+
+    @Test
+    void schedulerDrivesReactorTimeouts() {
+        assertThatThrownBy(() -> Mono.never()
+                .timeout(Duration.ofMillis(20), timerWheel.scheduler())
+                .block(Duration.ofSeconds(5)))
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    private double pending() {
+        return meterRegistry.get("telegram.timer.pending").gauge().value();
+    }
+}
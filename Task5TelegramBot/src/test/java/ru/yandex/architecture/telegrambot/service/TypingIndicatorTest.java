@@ -0,0 +1,142 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.architecture.telegrambot.config.TimerConfig;
+import ru.yandex.architecture.telegrambot.config.TypingConfig;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class TypingIndicatorTest {
+
+    private static final Long CHAT = 1L;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private TypingConfig config;
+    private MeterRegistry meterRegistry;
+    private TimerWheel timerWheel;
+
+    @BeforeEach
+    void setUp() {
+        config = new TypingConfig();
+        config.setRefreshInterval(Duration.ofMillis(50));
+        meterRegistry = new SimpleMeterRegistry();
+        timerWheel = new TimerWheel(new TimerConfig(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Test
+    void queriesOfOneChatShareKeepalive() {
+        TypingIndicator indicator = indicator();
+        AtomicInteger firstActions = new AtomicInteger();
+        AtomicInteger secondActions = new AtomicInteger();
+
+        TypingIndicator.Handle first = indicator.start(CHAT, counting(firstActions));
+        TypingIndicator.Handle second = indicator.start(CHAT, counting(secondActions));
+
+        await().atMost(TIMEOUT).until(() -> firstActions.get() >= 3);
+        assertThat(secondActions).hasValue(0);
+        assertThat(active()).isEqualTo(1);
+
+        // Индикатор другого чата обновляется отдельно
+        AtomicInteger otherActions = new AtomicInteger();
+        TypingIndicator.Handle other = indicator.start(2L, counting(otherActions));
+        await().atMost(TIMEOUT).until(() -> otherActions.get() >= 1);
+        assertThat(active()).isEqualTo(2);
+
+        first.stop();
+        second.stop();
+        other.stop();
+    }
+
+    @Test
+    void keepaliveStopsWhenLastQueryEnds() throws InterruptedException {
+        TypingIndicator indicator = indicator();
+        AtomicInteger actions = new AtomicInteger();
+        TypingIndicator.Handle first = indicator.start(CHAT, counting(actions));
+        TypingIndicator.Handle second = indicator.start(CHAT, counting(actions));
+        await().atMost(TIMEOUT).until(() -> actions.get() >= 1);
+
+        first.stop();
+        // Повторная остановка не снимает индикатор второго запроса
+        first.stop();
+        int afterFirst = actions.get();
+        await().atMost(TIMEOUT).until(() -> actions.get() >= afterFirst + 2);
+        assertThat(active()).isEqualTo(1);
+
+        second.stop();
+
+        assertThat(active()).isZero();
+        assertStopped(actions);
+    }
+
+    @Test
+    void keepaliveStopsAtMaxDuration() throws InterruptedException {
+        config.setMaxDuration(Duration.ofMillis(200));
+        TypingIndicator indicator = indicator();
+        AtomicInteger actions = new AtomicInteger();
+        TypingIndicator.Handle forgotten = indicator.start(CHAT, counting(actions));
+
+        await().atMost(TIMEOUT).until(() -> active() == 0);
+        assertThat(actions.get()).isPositive();
+        assertStopped(actions);
+
+        // Запрос, начатый после истечения, получает новый индикатор, а старый не мешает ему
+        AtomicInteger nextActions = new AtomicInteger();
+        TypingIndicator.Handle next = indicator.start(CHAT, counting(nextActions));
+        forgotten.stop();
+        await().atMost(TIMEOUT).until(() -> nextActions.get() >= 2);
+        assertThat(active()).isEqualTo(1);
+        next.stop();
+    }
+
+    @Test
+    void disabledIndicatorSendsNothing() throws InterruptedException {
+        config.setEnabled(false);
+        TypingIndicator indicator = indicator();
+        AtomicInteger actions = new AtomicInteger();
+
+        TypingIndicator.Handle handle = indicator.start(CHAT, counting(actions));
+        Thread.sleep(200);
+        handle.stop();
+
+        assertThat(actions).hasValue(0);
+        assertThat(active()).isZero();
+    }
+
+    private TypingIndicator indicator() {
+        return new TypingIndicator(config, timerWheel, meterRegistry);
+    }
+
+    private double active() {
+        return meterRegistry.get("telegram.typing.active").gauge().value();
+    }
+
+    private static Supplier<CompletableFuture<?>> counting(AtomicInteger actions) {
+        return () -> {
+            actions.incrementAndGet();
+            return CompletableFuture.completedFuture(true);
+        };
+    }
+
+    private static void assertStopped(AtomicInteger actions) throws InterruptedException {
+        // Отправка, начатая до остановки, успевает завершиться
+        Thread.sleep(50);
+        int stoppedAt = actions.get();
+        Thread.sleep(200);
+        assertThat(actions).hasValue(stoppedAt);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.architecture.telegrambot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.architecture.telegrambot.config.DispatcherConfig;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpdateDispatcherTest {
+
+    private static final int CHATS = 1000;
+    private static final long QUERY_MILLIS = 200;
+
+    private UpdateDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void virtualThreadsServeThousandSlowChatsConcurrently() throws InterruptedException {
+        dispatcher = dispatcher(DispatcherConfig.Mode.VIRTUAL);
+        CountDownLatch done = new CountDownLatch(CHATS);
+
+        long startedAt = System.nanoTime();
+        for (long chatId = 0; chatId < CHATS; chatId++) {
+            assertThat(dispatcher.dispatch(chatId, () -> {
+                sleep(QUERY_MILLIS);
+                done.countDown();
+            })).isTrue();
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        // Пул из 16 платформенных потоков потратил бы CHATS / 16 * QUERY_MILLIS = 12,5 с
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isLessThan(10 * QUERY_MILLIS);
+    }
+
+    @Test
+    void virtualThreadsKeepChatOrder() throws InterruptedException {
+        dispatcher = dispatcher(DispatcherConfig.Mode.VIRTUAL);
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            int update = i;
+            dispatcher.dispatch(42L, () -> {
+                sleep(update % 3);
+                handled.add(update);
+                done.countDown();
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(handled).isSorted().hasSize(20);
+    }
+
+    @Test
+    void errorDoesNotBreakChatChain() throws InterruptedException {
+        dispatcher = dispatcher(DispatcherConfig.Mode.VIRTUAL);
+        CountDownLatch done = new CountDownLatch(1);
+
+        dispatcher.dispatch(42L, () -> {
+            throw new AssertionError("сбой обработчика");
+        });
+        dispatcher.dispatch(42L, done::countDown);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static UpdateDispatcher dispatcher(DispatcherConfig.Mode mode) {
+        DispatcherConfig config = new DispatcherConfig();
+        config.setMode(mode);
+        config.setWorkers(16);
+        UpdateDispatcher dispatcher = new UpdateDispatcher(config, new SimpleMeterRegistry());
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
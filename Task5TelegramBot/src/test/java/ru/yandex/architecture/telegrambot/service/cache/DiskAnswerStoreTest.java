@@ -0,0 +1,73 @@
+package ru.yandex.architecture.telegrambot.service.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.architecture.telegrambot.dto.QueryKey;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskAnswerStoreTest {
+
+    private static final int CAPACITY = 64 * 1024;
+    private static final QueryKey KEY = new QueryKey("Who is Luke Skywalker?", 3);
+    private static final byte[] VALUE = "{\"answer\":\"Jedi\"}".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void answerSurvivesReopen() throws IOException {
+        Path path = dir.resolve("answers.bin");
+        try (DiskAnswerStore store = new DiskAnswerStore(path, CAPACITY)) {
+            store.put(KEY, "v1", VALUE, System.currentTimeMillis() + 60_000);
+        }
+
+        try (DiskAnswerStore store = new DiskAnswerStore(path, CAPACITY)) {
+            assertThat(store.get(KEY, "v1")).isEqualTo(VALUE);
+        }
+    }
+
+    @Test
+    void unknownVersionIsMissWithoutEviction() throws IOException {
+        try (DiskAnswerStore store = new DiskAnswerStore(dir.resolve("answers.bin"), CAPACITY)) {
+            store.put(KEY, "v1", VALUE, System.currentTimeMillis() + 60_000);
+
+            assertThat(store.get(KEY, null)).isNull();
+            assertThat(store.get(KEY, "v1")).isEqualTo(VALUE);
+        }
+    }
+
+    @Test
+    void otherVersionEvictsEntry() throws IOException {
+        try (DiskAnswerStore store = new DiskAnswerStore(dir.resolve("answers.bin"), CAPACITY)) {
+            store.put(KEY, "v1", VALUE, System.currentTimeMillis() + 60_000);
+
+            assertThat(store.get(KEY, "v2")).isNull();
+            assertThat(store.size()).isZero();
+        }
+    }
+
+    @Test
+    void corruptJournalIsReset() throws IOException {
+        Path path = dir.resolve("answers.bin");
+        try (DiskAnswerStore store = new DiskAnswerStore(path, CAPACITY)) {
+            store.put(KEY, "v1", VALUE, System.currentTimeMillis() + 60_000);
+        }
+        // Отрицательная длина ключа в первой записи (заголовок 8 байт, затем длина, срок, topK)
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(8 + 16);
+            file.writeInt(-5);
+        }
+
+        try (DiskAnswerStore store = new DiskAnswerStore(path, CAPACITY)) {
+            assertThat(store.size()).isZero();
+            store.put(KEY, "v1", VALUE, System.currentTimeMillis() + 60_000);
+            assertThat(store.get(KEY, "v1")).isEqualTo(VALUE);
+        }
+    }
+}
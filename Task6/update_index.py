@@ -21,6 +21,9 @@ import chromadb
 from chromadb.config import Settings
 from tqdm import tqdm
 
+# Манифест индекса общий со скриптами Task4 и Task7
+sys.path.insert(0, str(Path(__file__).parent.parent.absolute() / "Task4"))
+from config import write_index_manifest
 
 # Конфигурация
 EMBEDDING_MODEL = "BAAI/bge-base-en-v1.5"
@@ -373,6 +376,12 @@ def update_index():
     
     # Финальная статистика
     final_chunks_count = collection.count()
+    if processed_count > 0:
+        version = write_index_manifest(final_chunks_count, "update_index")
+        if version:
+            logger.info(f"Версия индекса обновлена: {version}")
+        else:
+            logger.error("Манифест индекса не обновлён: клиенты не узнают об изменении коллекции")
     elapsed_time = time.time() - start_time
     end_datetime = datetime.now()
     
@@ -4,6 +4,7 @@
 """
 
 import sys
+import json
 from pathlib import Path
 import chromadb
 from chromadb.config import Settings
@@ -13,7 +14,7 @@ SCRIPT_DIR = Path(__file__).parent.absolute()
 PROJECT_ROOT = SCRIPT_DIR.parent
 sys.path.insert(0, str(PROJECT_ROOT / "Task4"))
 
-from config import CHROMA_DB_PATH, COLLECTION_NAME
+from config import CHROMA_DB_PATH, COLLECTION_NAME, write_index_manifest
 
 # Сущности для удаления (по названиям файлов/документов)
 ENTITIES_TO_REMOVE = [
@@ -99,9 +100,13 @@ def remove_entities_from_index():
     # Проверяем оставшееся количество
     remaining_data = collection.get()
     print(f"Осталось чанков в индексе: {len(remaining_data['ids'])}")
+    version = write_index_manifest(len(remaining_data["ids"]), "remove_entities")
+    if version:
+        print(f"Версия индекса обновлена: {version}")
+    else:
+        print("⚠ Манифест индекса не обновлён: бот не узнает об изменении индекса")
     
     # Сохраняем информацию об удалении
-    import json
     removal_info = {
         "removed_entities": ENTITIES_TO_REMOVE,
         "removed_chunks_count": len(ids_to_remove),